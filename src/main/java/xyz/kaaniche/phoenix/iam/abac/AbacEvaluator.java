@@ -1,15 +1,37 @@
 package xyz.kaaniche.phoenix.iam.abac;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
 
-import java.time.LocalTime;
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * ABAC Policy Evaluator - evaluates policies against request context
+ * Only the candidate policies selected by the compiled attribute index are evaluated
+ * Decisions that do not depend on environment.time.* attributes are cached (see {@link DecisionCache})
+ * Every decision is counted and timed in {@link AbacMetrics}; per-decision logging is at FINE and guarded
+ * Candidates are evaluated DENY first in the order chosen by {@link EvaluationPlanner}: after the DENY policies,
+ * the first matching PERMIT decides. A scheduled task re-plans from runtime statistics every
+ * abac.plan.interval.seconds, off the request path
  */
 @ApplicationScoped
 public class AbacEvaluator {
@@ -18,102 +40,207 @@ public class AbacEvaluator {
     @Inject
     private PolicyStore policyStore;
     
+    @Inject
+    private AbacMetrics metrics;
+    
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+    
+    private volatile Plan plan;
+    private DecisionCache decisionCache;
+    private int parallelThreshold;
+    private ScheduledFuture<?> replanTask;
+    
+    public AbacEvaluator() {
+    }
+    
+    AbacEvaluator(PolicyStore policyStore, AbacMetrics metrics) {
+        this.policyStore = policyStore;
+        this.metrics = metrics;
+    }
+    
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        decisionCache = new DecisionCache(
+                config.getOptionalValue("abac.decision.cache.ttl.seconds", Long.class).orElse(30L) * 1000L,
+                config.getOptionalValue("abac.decision.cache.max.size", Integer.class).orElse(10_000));
+        parallelThreshold = config.getOptionalValue("abac.batch.parallel.threshold", Integer.class).orElse(256);
+    }
+    
+    public void start(@Observes Startup startup) {
+        long interval = ConfigProvider.getConfig().getOptionalValue("abac.plan.interval.seconds", Long.class).orElse(10L);
+        if (interval > 0) {
+            replanTask = scheduler.scheduleWithFixedDelay(this::replan, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (replanTask != null) {
+            replanTask.cancel(false);
+        }
+    }
+    
+    /**
+     * Re-order the current snapshot's candidate groups from the statistics gathered so far
+     */
+    void replan() {
+        try {
+            PolicySnapshot snapshot = policyStore.snapshot();
+            plan = new Plan(snapshot, snapshot.compiled().planned());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to re-plan ABAC policy evaluation order", e);
+        }
+    }
+    
     /**
      * Evaluate access decision for given context
      * Returns PERMIT if any policy permits and no policy denies
      */
     public Decision evaluate(Map<String, Object> context) {
-        List<AbacPolicy> policies = policyStore.getAllPolicies();
+        PolicySnapshot snapshot = policyStore.snapshot();
+        return evaluate(snapshot, planned(snapshot), context);
+    }
+    
+    /**
+     * Evaluate many independent contexts against one policy-set snapshot
+     * Decisions are returned in input order
+     */
+    public List<Decision> evaluateAll(List<Map<String, Object>> contexts) {
+        return evaluateAll(Map.of(), contexts);
+    }
+    
+    /**
+     * Evaluate one subject against many items (typically resources): each context is the subject's
+     * top-level attributes overlaid with the item's. Conditions that only read subject attributes no item
+     * overrides are evaluated once for the whole batch. Batches of at least abac.batch.parallel.threshold
+     * items are evaluated on a parallel stream; decisions are returned in input order.
+     */
+    public List<Decision> evaluateAll(Map<String, Object> subject, List<Map<String, Object>> items) {
+        PolicySnapshot snapshot = policyStore.snapshot();
+        Set<String> sharedRoots = new HashSet<>(subject.keySet());
+        for (Map<String, Object> item : items) {
+            sharedRoots.removeAll(item.keySet());
+        }
+        CompiledPolicySet policies = sharedRoots.isEmpty()
+                ? planned(snapshot)
+                : planned(snapshot).bind(subject, sharedRoots);
         
-        boolean hasPermit = false;
+        IntStream indexes = IntStream.range(0, items.size());
+        if (items.size() >= parallelThreshold) {
+            indexes = indexes.parallel();
+        }
+        return indexes.mapToObj(i -> evaluate(snapshot, policies, overlay(subject, items.get(i)))).toList();
+    }
+    
+    /**
+     * The latest re-planned order of the snapshot's policies; a snapshot published since the last re-plan
+     * uses the order it was built with, which already reflects the statistics of the policies it kept
+     */
+    private CompiledPolicySet planned(PolicySnapshot snapshot) {
+        Plan current = plan;
+        return current != null && current.snapshot() == snapshot ? current.policies() : snapshot.compiled();
+    }
+    
+    private Decision evaluate(PolicySnapshot snapshot, CompiledPolicySet policies, Map<String, Object> context) {
+        long start = System.nanoTime();
+        DecisionCache.Key key = decisionCache.key(snapshot, context);
+        Decision cached = decisionCache.get(key);
+        if (cached != null) {
+            metrics.recordCacheHit(cached, System.nanoTime() - start);
+            return cached;
+        }
         
-        for (AbacPolicy policy : policies) {
-            if (matchesPolicy(policy, context)) {
-                LOGGER.info("Policy matched: " + policy.getName());
-                
-                if ("DENY".equals(policy.getEffect())) {
-                    LOGGER.warning("Access DENIED by policy: " + policy.getName());
-                    return new Decision(false, "DENY", policy.getName());
-                }
-                
-                if ("PERMIT".equals(policy.getEffect())) {
-                    hasPermit = true;
+        AbacMetrics.Trace trace = metrics.startTrace();
+        Decision decision = decide(snapshot, policies, context, key, trace);
+        metrics.recordEvaluation(decision, System.nanoTime() - start, trace);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Access " + decision.getEffect() + " (" + decision.getReason() + ", policy set version "
+                    + decision.getPolicyVersion() + ")");
+        }
+        return decision;
+    }
+    
+    private Decision decide(PolicySnapshot snapshot, CompiledPolicySet policies, Map<String, Object> context,
+                            DecisionCache.Key key, AbacMetrics.Trace trace) {
+        List<CompiledPolicy[]> groups = policies.candidates(context);
+        int[] firstPermit = new int[groups.size()];
+        boolean timeDependent = false;
+        
+        // Any matching DENY wins, so every DENY candidate is checked before any PERMIT
+        for (int g = 0; g < firstPermit.length; g++) {
+            CompiledPolicy[] candidates = groups.get(g);
+            int i = 0;
+            for (; i < candidates.length && candidates[i].deny(); i++) {
+                timeDependent |= candidates[i].timeDependent();
+                if (matches(candidates[i], context, trace)) {
+                    return cache(key, new Decision(false, "DENY", candidates[i].name(), snapshot.version()), timeDependent);
                 }
             }
+            firstPermit[g] = i;
         }
         
-        if (hasPermit) {
-            LOGGER.info("Access PERMITTED");
-            return new Decision(true, "PERMIT", null);
+        // No DENY applies: the first matching PERMIT decides and the rest need not be evaluated
+        for (int g = 0; g < firstPermit.length; g++) {
+            CompiledPolicy[] candidates = groups.get(g);
+            for (int i = firstPermit[g]; i < candidates.length; i++) {
+                timeDependent |= candidates[i].timeDependent();
+                if (matches(candidates[i], context, trace)) {
+                    return cache(key, new Decision(true, "PERMIT", null, snapshot.version()), timeDependent);
+                }
+            }
         }
         
-        LOGGER.info("Access DENIED - no matching PERMIT policy");
-        return new Decision(false, "DENY", "No matching policy");
+        return cache(key, new Decision(false, "DENY", "No matching policy", snapshot.version()), timeDependent);
     }
     
-    private boolean matchesPolicy(AbacPolicy policy, Map<String, Object> context) {
-        if (policy.getConditions() == null || policy.getConditions().isEmpty()) {
-            return true;
+    private static boolean matches(CompiledPolicy policy, Map<String, Object> context, AbacMetrics.Trace trace) {
+        long start = trace == null ? 0L : System.nanoTime();
+        boolean matched = policy.matches(context);
+        policy.stats().record(matched);
+        if (trace != null) {
+            trace.step(policy, matched, System.nanoTime() - start);
         }
-        
-        for (AbacPolicy.Condition condition : policy.getConditions()) {
-            if (!evaluateCondition(condition, context)) {
-                return false;
-            }
+        if (matched && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Policy matched: " + policy.name());
         }
-        
-        return true;
+        return matched;
     }
     
-    private boolean evaluateCondition(AbacPolicy.Condition condition, Map<String, Object> context) {
-        Object contextValue = getNestedValue(context, condition.getAttribute());
-        Object expectedValue = condition.getValue();
-        String operator = condition.getOperator();
-        
-        return switch (operator) {
-            case "equals" -> contextValue != null && contextValue.equals(expectedValue);
-            case "contains" -> contextValue instanceof String str && 
-                    expectedValue instanceof String exp && str.contains(exp);
-            case "in" -> expectedValue instanceof List list && list.contains(contextValue);
-            case "matches" -> contextValue instanceof String str && 
-                    expectedValue instanceof String regex && str.matches(regex);
-            case "greaterThan" -> contextValue instanceof Number num1 && 
-                    expectedValue instanceof Number num2 && 
-                    num1.doubleValue() > num2.doubleValue();
-            case "lessThan" -> contextValue instanceof Number num1 && 
-                    expectedValue instanceof Number num2 && 
-                    num1.doubleValue() < num2.doubleValue();
-            default -> {
-                LOGGER.warning("Unknown operator: " + operator);
-                yield false;
-            }
-        };
+    private static Map<String, Object> overlay(Map<String, Object> subject, Map<String, Object> item) {
+        if (subject.isEmpty()) {
+            return item;
+        }
+        Map<String, Object> context = new HashMap<>(subject);
+        context.putAll(item);
+        return context;
     }
     
-    private Object getNestedValue(Map<String, Object> context, String path) {
-        String[] parts = path.split("\\.");
-        Object current = context;
-        
-        for (String part : parts) {
-            if (current instanceof Map map) {
-                current = map.get(part);
-            } else {
-                return null;
-            }
+    /**
+     * A decision that read the clock is only valid for this request; everything else was computed from the key alone
+     */
+    private Decision cache(DecisionCache.Key key, Decision decision, boolean timeDependent) {
+        if (!timeDependent) {
+            decisionCache.put(key, decision);
         }
-        
-        return current;
+        return decision;
+    }
+    
+    private record Plan(PolicySnapshot snapshot, CompiledPolicySet policies) {
     }
     
     public static class Decision {
         private final boolean permitted;
         private final String effect;
         private final String reason;
+        private final long policyVersion;
         
-        public Decision(boolean permitted, String effect, String reason) {
+        public Decision(boolean permitted, String effect, String reason, long policyVersion) {
             this.permitted = permitted;
             this.effect = effect;
             this.reason = reason;
+            this.policyVersion = policyVersion;
         }
         
         public boolean isPermitted() {
@@ -127,5 +254,12 @@ public class AbacEvaluator {
         public String getReason() {
             return reason;
         }
+        
+        /**
+         * Version of the policy set the decision was made against, for auditing
+         */
+        public long getPolicyVersion() {
+            return policyVersion;
+        }
     }
 }
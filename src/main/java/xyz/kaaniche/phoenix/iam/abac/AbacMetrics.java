@@ -0,0 +1,144 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.abac.AbacEvaluator.Decision;
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ABAC instrumentation: decision counters, a decision latency histogram, per-policy statistics
+ * (kept on the compiled policies themselves, see {@link PolicyStats}) and sampled decision traces.
+ * <p>
+ * The hot path only increments striped counters; a trace, with per-policy timings, is recorded for a
+ * {@code abac.trace.sample.ratio} fraction of evaluations into a ring of the last {@code abac.trace.buffer.size}.
+ */
+@ApplicationScoped
+public class AbacMetrics {
+    @Inject
+    private PolicyStore policyStore;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder permits = new LongAdder();
+    private final LongAdder denies = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final AtomicLong nextTrace = new AtomicLong();
+    private double sampleRatio;
+    private AtomicReferenceArray<Map<String, Object>> traces;
+
+    public AbacMetrics() {
+    }
+
+    AbacMetrics(PolicyStore policyStore) {
+        this.policyStore = policyStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        sampleRatio = config.getOptionalValue("abac.trace.sample.ratio", Double.class).orElse(0.001);
+        traces = new AtomicReferenceArray<>(Math.max(1, config.getOptionalValue("abac.trace.buffer.size", Integer.class).orElse(64)));
+    }
+
+    /**
+     * A trace to fill for this evaluation, or null when it is not sampled
+     */
+    Trace startTrace() {
+        if (sampleRatio <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRatio) {
+            return null;
+        }
+        return new Trace();
+    }
+
+    void recordCacheHit(Decision decision, long nanos) {
+        cacheHits.increment();
+        record(decision, nanos);
+    }
+
+    void recordEvaluation(Decision decision, long nanos, Trace trace) {
+        record(decision, nanos);
+        if (trace != null) {
+            int slot = (int) (nextTrace.getAndIncrement() % traces.length());
+            traces.set(slot, trace.toReport(decision, nanos));
+        }
+    }
+
+    private void record(Decision decision, long nanos) {
+        (decision.isPermitted() ? permits : denies).increment();
+        latency.record(nanos);
+    }
+
+    /**
+     * Everything collected so far, with the {@code topPolicies} most evaluated policies of the current set
+     */
+    public Map<String, Object> report(int topPolicies) {
+        PolicySnapshot snapshot = policyStore.snapshot();
+        List<Map<String, Object>> policies = new ArrayList<>();
+        snapshot.compiledPolicies().stream()
+                .sorted(Comparator.comparingLong((CompiledPolicy policy) -> policy.stats().evaluations()).reversed())
+                .limit(topPolicies)
+                .forEach(policy -> {
+                    PolicyStats stats = policy.stats();
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("id", policy.source().getId());
+                    entry.put("name", policy.name());
+                    entry.put("evaluations", stats.evaluations());
+                    entry.put("matches", stats.matches());
+                    entry.put("sampledMeanNanos", stats.meanSampledNanos());
+                    policies.add(entry);
+                });
+        List<Map<String, Object>> recent = new ArrayList<>();
+        for (int i = 0; i < traces.length(); i++) {
+            Map<String, Object> trace = traces.get(i);
+            if (trace != null) {
+                recent.add(trace);
+            }
+        }
+        recent.sort(Comparator.comparing(trace -> (Instant) trace.get("at")));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("policyVersion", snapshot.version());
+        report.put("decisions", Map.of("permit", permits.sum(), "deny", denies.sum(), "cacheHits", cacheHits.sum()));
+        report.put("latency", latency.report());
+        report.put("policies", policies);
+        report.put("traces", recent);
+        return report;
+    }
+
+    /**
+     * Policies evaluated by one sampled decision, in evaluation order
+     */
+    static final class Trace {
+        private final Instant at = Instant.now();
+        private final List<Map<String, Object>> steps = new ArrayList<>();
+
+        void step(CompiledPolicy policy, boolean matched, long nanos) {
+            policy.stats().recordSample(nanos);
+            steps.add(Map.of("policy", policy.source().getId(), "matched", matched, "nanos", nanos));
+        }
+
+        private Map<String, Object> toReport(Decision decision, long nanos) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("at", at);
+            report.put("policyVersion", decision.getPolicyVersion());
+            report.put("effect", decision.getEffect());
+            report.put("reason", decision.getReason() != null ? decision.getReason() : "N/A");
+            report.put("nanos", nanos);
+            report.put("steps", steps);
+            return report;
+        }
+    }
+}
@@ -13,10 +13,16 @@ public class AbacPolicy {
     private String effect; // PERMIT or DENY
     private List<Condition> conditions;
     
+    /**
+     * Compares an attribute either with a literal {@code value} or, when {@code valueAttribute} is set,
+     * with another attribute of the same request (e.g. "user.id" equals "resource.ownerId")
+     * A value of the form "${path}" is read as a valueAttribute for compatibility
+     */
     public static class Condition {
         private String attribute; // e.g., "user.role", "resource.type", "environment.time"
         private String operator;  // e.g., "equals", "contains", "in", "matches"
         private Object value;
+        private String valueAttribute;
         
         public Condition() {}
         
@@ -26,6 +32,12 @@ public class AbacPolicy {
             this.value = value;
         }
         
+        public static Condition compareAttributes(String attribute, String operator, String valueAttribute) {
+            Condition condition = new Condition(attribute, operator, null);
+            condition.setValueAttribute(valueAttribute);
+            return condition;
+        }
+        
         public String getAttribute() {
             return attribute;
         }
@@ -49,6 +61,14 @@ public class AbacPolicy {
         public void setValue(Object value) {
             this.value = value;
         }
+        
+        public String getValueAttribute() {
+            return valueAttribute;
+        }
+        
+        public void setValueAttribute(String valueAttribute) {
+            this.valueAttribute = valueAttribute;
+        }
     }
     
     public AbacPolicy() {}
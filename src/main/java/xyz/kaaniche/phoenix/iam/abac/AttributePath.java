@@ -0,0 +1,74 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import java.util.Map;
+
+/**
+ * Dotted attribute path (e.g. "user.role") split once when a policy is compiled
+ */
+final class AttributePath {
+    private final String path;
+    private final String[] segments;
+
+    AttributePath(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Condition attribute is required");
+        }
+        this.path = path;
+        this.segments = path.split("\\.");
+    }
+
+    /**
+     * Walk the nested context maps; null when a segment is missing or not a map
+     */
+    Object resolve(Map<String, Object> context) {
+        Object current = context;
+        for (String segment : segments) {
+            if (current instanceof Map<?, ?> map) {
+                current = map.get(segment);
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    String path() {
+        return path;
+    }
+
+    /**
+     * Number of map lookups {@link #resolve} performs
+     */
+    int depth() {
+        return segments.length;
+    }
+
+    /**
+     * First segment, i.e. the top-level context entry the attribute lives under
+     */
+    String root() {
+        return segments[0];
+    }
+
+    /**
+     * Whether the attribute changes with the clock ({@code environment.time.*}); such values are never cached on
+     */
+    boolean isTimeDependent() {
+        return path.equals("environment.time") || path.startsWith("environment.time.");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AttributePath other && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
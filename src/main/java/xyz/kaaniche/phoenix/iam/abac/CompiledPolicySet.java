@@ -0,0 +1,161 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable, indexed view of the compiled policies.
+ * <p>
+ * Policies with an index key are filed under (attribute, value); the rest are always candidates.
+ * Each policy is filed under a single attribute, so the candidate groups of a request never overlap.
+ * Policies whose effect is neither PERMIT nor DENY cannot change a decision and are left out.
+ * {@link #keyValues} extracts the attributes a decision can depend on, apart from time-dependent ones.
+ * Every candidate group is ordered DENY first by {@link EvaluationPlanner}; {@link #planned} re-orders a copy
+ * from the policies' runtime statistics.
+ */
+final class CompiledPolicySet {
+    private static final CompiledPolicy[] NONE = new CompiledPolicy[0];
+    static final CompiledPolicySet EMPTY = new CompiledPolicySet(List.of());
+
+    private final CompiledPolicy[] unindexed;
+    private final AttributePath[] indexedPaths;
+    private final Map<Object, CompiledPolicy[]>[] indexedValues;
+    private final AttributePath[] keyPaths;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    CompiledPolicySet(Collection<CompiledPolicy> policies) {
+        List<CompiledPolicy> rest = new ArrayList<>();
+        Map<AttributePath, Map<Object, List<CompiledPolicy>>> byPath = new LinkedHashMap<>();
+        TreeSet<AttributePath> referenced = new TreeSet<>(Comparator.comparing(AttributePath::path));
+        int count = 0;
+        for (CompiledPolicy policy : policies) {
+            if (!policy.deny() && !policy.permit()) {
+                continue;
+            }
+            count++;
+            policy.paths().stream().filter(path -> !path.isTimeDependent()).forEach(referenced::add);
+            if (policy.indexPath() == null) {
+                rest.add(policy);
+                continue;
+            }
+            Map<Object, List<CompiledPolicy>> byValue = byPath.computeIfAbsent(policy.indexPath(), p -> new HashMap<>());
+            for (Object value : policy.indexValues()) {
+                byValue.computeIfAbsent(value, v -> new ArrayList<>()).add(policy);
+            }
+        }
+        this.unindexed = EvaluationPlanner.order(rest.toArray(NONE));
+        this.indexedPaths = byPath.keySet().toArray(new AttributePath[0]);
+        this.indexedValues = new Map[indexedPaths.length];
+        int i = 0;
+        for (Map<Object, List<CompiledPolicy>> byValue : byPath.values()) {
+            Map<Object, CompiledPolicy[]> frozen = new HashMap<>(byValue.size() * 4 / 3 + 1);
+            byValue.forEach((value, list) -> frozen.put(value, EvaluationPlanner.order(list.toArray(NONE))));
+            indexedValues[i++] = frozen;
+        }
+        this.keyPaths = referenced.toArray(new AttributePath[0]);
+        this.size = count;
+    }
+
+    private CompiledPolicySet(CompiledPolicy[] unindexed, AttributePath[] indexedPaths,
+                              Map<Object, CompiledPolicy[]>[] indexedValues, AttributePath[] keyPaths, int size) {
+        this.unindexed = unindexed;
+        this.indexedPaths = indexedPaths;
+        this.indexedValues = indexedValues;
+        this.keyPaths = keyPaths;
+        this.size = size;
+    }
+
+    /**
+     * The same policies and index with every candidate group re-ordered from current statistics
+     */
+    @SuppressWarnings("unchecked")
+    CompiledPolicySet planned() {
+        Map<Object, CompiledPolicy[]>[] values = new Map[indexedValues.length];
+        for (int i = 0; i < values.length; i++) {
+            Map<Object, CompiledPolicy[]> ordered = new HashMap<>(indexedValues[i].size() * 4 / 3 + 1);
+            indexedValues[i].forEach((value, group) -> ordered.put(value, EvaluationPlanner.order(group)));
+            values[i] = ordered;
+        }
+        return new CompiledPolicySet(EvaluationPlanner.order(unindexed), indexedPaths, values, keyPaths, size);
+    }
+
+    /**
+     * Specialize the set for a batch whose contexts all carry {@code shared} under {@code sharedRoots}.
+     * Unindexed policies and those indexed on a shared attribute are partially evaluated once (see
+     * {@link CompiledPolicy#bind}); index entries on per-item attributes are reused as they are.
+     */
+    @SuppressWarnings("unchecked")
+    CompiledPolicySet bind(Map<String, Object> shared, Set<String> sharedRoots) {
+        List<CompiledPolicy> bound = new ArrayList<>();
+        List<AttributePath> itemPaths = new ArrayList<>();
+        List<Map<Object, CompiledPolicy[]>> itemValues = new ArrayList<>();
+        bindAll(unindexed, shared, sharedRoots, bound);
+        for (int i = 0; i < indexedPaths.length; i++) {
+            if (sharedRoots.contains(indexedPaths[i].root())) {
+                bindAll(indexedValues[i].get(indexedPaths[i].resolve(shared)), shared, sharedRoots, bound);
+            } else {
+                itemPaths.add(indexedPaths[i]);
+                itemValues.add(indexedValues[i]);
+            }
+        }
+        return new CompiledPolicySet(EvaluationPlanner.order(bound.toArray(NONE)), itemPaths.toArray(new AttributePath[0]),
+                itemValues.toArray(new Map[0]), keyPaths, size);
+    }
+
+    private static void bindAll(CompiledPolicy[] policies, Map<String, Object> shared, Set<String> sharedRoots,
+                                List<CompiledPolicy> bound) {
+        if (policies == null) {
+            return;
+        }
+        for (CompiledPolicy policy : policies) {
+            CompiledPolicy residual = policy.bind(shared, sharedRoots);
+            if (residual != null) {
+                bound.add(residual);
+            }
+        }
+    }
+
+    /**
+     * Values of every referenced, time-independent attribute, in a fixed order: two contexts with equal
+     * key values get the same candidates and the same decision from the time-independent policies
+     */
+    Object[] keyValues(Map<String, Object> context) {
+        Object[] values = new Object[keyPaths.length];
+        for (int i = 0; i < keyPaths.length; i++) {
+            values[i] = keyPaths[i].resolve(context);
+        }
+        return values;
+    }
+
+    /**
+     * The groups of policies that can possibly match the context; every other policy is known not to.
+     * Within a group, DENY policies precede PERMIT policies.
+     */
+    List<CompiledPolicy[]> candidates(Map<String, Object> context) {
+        List<CompiledPolicy[]> groups = new ArrayList<>(indexedPaths.length + 1);
+        if (unindexed.length > 0) {
+            groups.add(unindexed);
+        }
+        for (int i = 0; i < indexedPaths.length; i++) {
+            CompiledPolicy[] group = indexedValues[i].get(indexedPaths[i].resolve(context));
+            if (group != null) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,127 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import xyz.kaaniche.phoenix.iam.abac.AbacEvaluator.Decision;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Decisions keyed by the policy-set version and the values of the attributes the policies reference.
+ * <p>
+ * Attributes no policy reads are not part of the key, so requests that differ only in those share an entry.
+ * Entries live at most {@code ttlMillis}. All entries share that TTL, so insertion order is also expiry order:
+ * a put drops the expired head of the insertion queue and, while {@code maxSize} entries are held, the oldest ones.
+ * The first lookup made against a newer policy-set version drops every entry.
+ */
+final class DecisionCache {
+    private final long ttlMillis;
+    private final int maxSize;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Inserted> insertions = new ConcurrentLinkedQueue<>();
+    private volatile long version;
+
+    DecisionCache(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Cache key for the context, or null when caching is disabled
+     */
+    Key key(PolicySnapshot snapshot, Map<String, Object> context) {
+        if (ttlMillis <= 0 || maxSize <= 0) {
+            return null;
+        }
+        return new Key(snapshot.version(), snapshot.compiled().keyValues(context));
+    }
+
+    Decision get(Key key) {
+        if (key == null || !current(key)) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis < System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.decision;
+    }
+
+    void put(Key key, Decision decision) {
+        if (key == null || !current(key)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Inserted oldest;
+        while ((oldest = insertions.peek()) != null
+                && (oldest.entry.expiresAtMillis < now || entries.size() >= maxSize)) {
+            // a racing put may have taken that head already: evicting the next one early is harmless
+            oldest = insertions.poll();
+            if (oldest != null) {
+                entries.remove(oldest.key, oldest.entry);
+            }
+        }
+        Entry entry = new Entry(decision, now + ttlMillis);
+        entries.put(key, entry);
+        insertions.add(new Inserted(key, entry));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the cache forward to the key's policy-set version; false for keys of an older version
+     */
+    private boolean current(Key key) {
+        if (key.version == version) {
+            return true;
+        }
+        synchronized (this) {
+            if (key.version > version) {
+                entries.clear();
+                insertions.clear();
+                version = key.version;
+            }
+            return key.version == version;
+        }
+    }
+
+    static final class Key {
+        private final long version;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(long version, Object[] values) {
+            this.version = version;
+            this.values = values;
+            this.hash = 31 * Long.hashCode(version) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && version == other.version && hash == other.hash
+                    && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private record Entry(Decision decision, long expiresAtMillis) {
+    }
+
+    /**
+     * Queued in insertion order; stale once its key was removed or re-put, then dropping it removes nothing
+     */
+    private record Inserted(Key key, Entry entry) {
+    }
+}
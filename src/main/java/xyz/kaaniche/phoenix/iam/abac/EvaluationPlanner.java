@@ -0,0 +1,49 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Orders a group of candidate policies for short-circuit evaluation.
+ * <p>
+ * DENY policies come first: once none of them matches, the first matching PERMIT decides and the remaining
+ * PERMIT policies are skipped. Within each effect, policies are ranked by expected cost per match, i.e. their
+ * cost (mean sampled time, or the static estimate before any sample) divided by their observed match rate,
+ * so cheap policies that usually match are tried first. The order never changes a decision's effect.
+ */
+final class EvaluationPlanner {
+    private EvaluationPlanner() {
+    }
+
+    /**
+     * A reordered copy of {@code policies}; ties keep their current relative order
+     */
+    static CompiledPolicy[] order(CompiledPolicy[] policies) {
+        if (policies.length < 2) {
+            return policies;
+        }
+        double[] scores = new double[policies.length];
+        Integer[] order = new Integer[policies.length];
+        for (int i = 0; i < policies.length; i++) {
+            scores[i] = score(policies[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer, Boolean>comparing(i -> !policies[i].deny()).thenComparingDouble(i -> scores[i]));
+        CompiledPolicy[] ordered = new CompiledPolicy[policies.length];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = policies[order[i]];
+        }
+        return ordered;
+    }
+
+    private static double score(CompiledPolicy policy) {
+        PolicyStats stats = policy.stats();
+        long sampled = stats.meanSampledNanos();
+        double cost = sampled >= 0 ? sampled : policy.cost();
+        // Laplace estimate: 1/2 for a policy never evaluated, never 0 for one that has not matched yet
+        double matchRate = (stats.matches() + 1.0) / (stats.evaluations() + 2.0);
+        return cost / matchRate;
+    }
+}
@@ -0,0 +1,75 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets:
+ * bucket 0 counts latencies under 1 µs, bucket i those in [2^(i-1), 2^i) µs, and the last one everything slower.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = 24;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000));
+        counts[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Counts per bucket with their upper bounds, plus the mean and bucket-resolution percentiles
+     */
+    Map<String, Object> report() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot[i] > 0) {
+                buckets.add(Map.of("leMicros", upperBound(i), "count", snapshot[i]));
+            }
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", total);
+        report.put("meanMicros", total == 0 ? 0.0 : totalNanos.sum() / 1000.0 / total);
+        report.put("p50Micros", percentile(snapshot, total, 0.50));
+        report.put("p90Micros", percentile(snapshot, total, 0.90));
+        report.put("p99Micros", percentile(snapshot, total, 0.99));
+        report.put("buckets", buckets);
+        return report;
+    }
+
+    private static Object percentile(long[] snapshot, long total, double quantile) {
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static Object upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? "+Inf" : 1L << bucket;
+    }
+}
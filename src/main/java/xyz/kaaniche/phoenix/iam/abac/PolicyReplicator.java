@@ -0,0 +1,179 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
+import jakarta.inject.Inject;
+import jakarta.json.bind.JsonbException;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.entity.PolicyRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the node's {@link PolicyStore} in sync with the {@link PolicyRepository}.
+ * <p>
+ * At startup the live policies up to the current revision are read in pages of {@code abac.policies.page.size}
+ * and published as one snapshot; an empty repository is seeded with {@link PolicyStore#defaultPolicies()}.
+ * Nodes starting together against the same empty database race to seed it: the others load the winner's seed.
+ * Every {@code abac.policies.poll.interval.seconds} the changes after the last seen revision are applied
+ * as one delta snapshot, so other nodes' writes arrive without a reload. Writes made through this bean are
+ * applied locally at once and skipped when the feed brings them back.
+ * Loading, polling and writes are serialized on the bean; each repository call runs in its own transaction.
+ */
+@ApplicationScoped
+public class PolicyReplicator {
+    private static final Logger LOGGER = Logger.getLogger(PolicyReplicator.class.getName());
+
+    @Inject
+    private PolicyRepository repository;
+
+    @Inject
+    private PolicyStore store;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    // policy id -> revision of a local write not yet seen on the feed
+    private final Map<String, Long> appliedLocally = new HashMap<>();
+    private int pageSize;
+    private long lastRevision;
+    private ScheduledFuture<?> pollTask;
+
+    public PolicyReplicator() {
+    }
+
+    PolicyReplicator(PolicyRepository repository, PolicyStore store, int pageSize) {
+        this.repository = repository;
+        this.store = store;
+        this.pageSize = pageSize;
+    }
+
+    public synchronized void start(@Observes Startup startup) {
+        Config config = ConfigProvider.getConfig();
+        pageSize = config.getOptionalValue("abac.policies.page.size", Integer.class).orElse(1000);
+        long interval = config.getOptionalValue("abac.policies.poll.interval.seconds", Long.class).orElse(5L);
+        load();
+        if (interval > 0) {
+            pollTask = scheduler.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pollTask != null) {
+            pollTask.cancel(false);
+        }
+    }
+
+    public synchronized void save(AbacPolicy policy) {
+        PolicyCompiler.compile(policy); // reject what would not compile before other nodes see it
+        long revision = repository.save(policy);
+        appliedLocally.put(policy.getId(), revision);
+        store.addPolicy(policy);
+    }
+
+    public synchronized boolean delete(String policyId) {
+        long revision = repository.delete(policyId);
+        if (revision == 0L) {
+            return false;
+        }
+        appliedLocally.put(policyId, revision);
+        store.removePolicy(policyId);
+        return true;
+    }
+
+    public synchronized void poll() {
+        try {
+            applyChanges();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to poll ABAC policy changes after revision " + lastRevision, e);
+        }
+    }
+
+    void load() {
+        long upTo = repository.currentRevision();
+        if (upTo == 0L) {
+            upTo = seed();
+        }
+        List<AbacPolicy> policies = new ArrayList<>();
+        long after = 0L;
+        List<PolicyRecord> page;
+        do {
+            page = repository.activePage(after, upTo, pageSize);
+            for (PolicyRecord record : page) {
+                AbacPolicy policy = decode(record);
+                if (policy != null) {
+                    policies.add(policy);
+                }
+                after = record.getRevision();
+            }
+        } while (page.size() == pageSize);
+        store.replaceAll(policies);
+        lastRevision = upTo;
+    }
+
+    private long seed() {
+        try {
+            if (repository.seed(PolicyStore.defaultPolicies())) {
+                LOGGER.info("Seeded the empty policy repository with the default ABAC policies");
+            }
+        } catch (RuntimeException e) {
+            // most likely another node created the revision counter first: load what it committed
+            long revision = repository.currentRevision();
+            if (revision == 0L) {
+                throw e;
+            }
+            LOGGER.log(Level.INFO, "The policy repository was seeded by another node", e);
+        }
+        return repository.currentRevision();
+    }
+
+    void applyChanges() {
+        List<PolicyRecord> changes;
+        do {
+            changes = repository.changesAfter(lastRevision, pageSize);
+            List<AbacPolicy> upserts = new ArrayList<>();
+            List<String> removals = new ArrayList<>();
+            for (PolicyRecord record : changes) {
+                if (!appliedLocally.remove(record.getId(), record.getRevision())) {
+                    if (record.isDeleted()) {
+                        removals.add(record.getId());
+                    } else {
+                        AbacPolicy policy = decode(record);
+                        if (policy != null) {
+                            upserts.add(policy);
+                        }
+                    }
+                }
+                lastRevision = record.getRevision();
+            }
+            if (!upserts.isEmpty() || !removals.isEmpty()) {
+                store.apply(upserts, removals);
+            }
+        } while (changes.size() == pageSize);
+        long seen = lastRevision;
+        // local writes overwritten by a later change never come back with their own revision
+        appliedLocally.values().removeIf(revision -> revision <= seen);
+    }
+
+    private static AbacPolicy decode(PolicyRecord record) {
+        try {
+            return PolicyRepository.toPolicy(record);
+        } catch (JsonbException e) {
+            LOGGER.warning("Skipping stored policy " + record.getId() + ": unreadable conditions");
+            return null;
+        }
+    }
+}
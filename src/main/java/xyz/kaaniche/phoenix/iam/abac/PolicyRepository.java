@@ -0,0 +1,140 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import xyz.kaaniche.phoenix.iam.entity.PolicyRecord;
+import xyz.kaaniche.phoenix.iam.entity.PolicyRevision;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JPA access to the stored ABAC policies and their revision feed.
+ * Writes bump the {@link PolicyRevision} counter under a pessimistic lock and stamp the row with it;
+ * reads page by revision, so neither startup nor polling ever holds the whole table in one result.
+ */
+@ApplicationScoped
+public class PolicyRepository {
+    // pages are only read to build the in-memory snapshot: skip Hibernate's dirty-checking copies
+    private static final String READ_ONLY = "org.hibernate.readOnly";
+    private static final Jsonb JSONB = JsonbBuilder.create();
+    private static final Type CONDITIONS = new ArrayList<AbacPolicy.Condition>() {}.getClass().getGenericSuperclass();
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public PolicyRepository() {
+    }
+
+    PolicyRepository(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * Revision of the latest stored change; 0 if no policy was ever stored
+     */
+    public long currentRevision() {
+        PolicyRevision counter = em.find(PolicyRevision.class, PolicyRevision.ID);
+        return counter == null ? 0L : counter.getRevision();
+    }
+
+    /**
+     * Live policies with a revision in (after, upTo], oldest first
+     */
+    public List<PolicyRecord> activePage(long after, long upTo, int limit) {
+        return em.createNamedQuery(PolicyRecord.ACTIVE_PAGE, PolicyRecord.class)
+                .setParameter("after", after)
+                .setParameter("upTo", upTo)
+                .setHint(READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Every change (including deletions) after the given revision, oldest first
+     */
+    public List<PolicyRecord> changesAfter(long after, int limit) {
+        return em.createNamedQuery(PolicyRecord.CHANGES_AFTER, PolicyRecord.class)
+                .setParameter("after", after)
+                .setHint(READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Store {@code policies} in one transaction if nothing was stored yet; false if another writer got there first.
+     * Two callers that both find no counter row race to insert it and the loser's commit fails instead.
+     */
+    @Transactional
+    public boolean seed(List<AbacPolicy> policies) {
+        PolicyRevision counter = em.find(PolicyRevision.class, PolicyRevision.ID, LockModeType.PESSIMISTIC_WRITE);
+        if (counter != null && counter.getRevision() > 0L) {
+            return false;
+        }
+        for (AbacPolicy policy : policies) {
+            save(policy);
+        }
+        return true;
+    }
+
+    @Transactional
+    public long save(AbacPolicy policy) {
+        long revision = nextRevision();
+        PolicyRecord record = em.find(PolicyRecord.class, policy.getId());
+        boolean created = record == null;
+        if (created) {
+            record = new PolicyRecord();
+            record.setId(policy.getId());
+        }
+        record.setName(policy.getName() != null ? policy.getName() : policy.getId());
+        record.setDescription(policy.getDescription());
+        record.setEffect(policy.getEffect());
+        record.setConditions(policy.getConditions() == null ? null : JSONB.toJson(policy.getConditions()));
+        record.setDeleted(false);
+        record.setRevision(revision);
+        if (created) {
+            // persisted once complete: the not-null columns are checked as soon as the row is queued for insert
+            em.persist(record);
+        }
+        return revision;
+    }
+
+    /**
+     * Tombstone the policy; returns the new revision, or 0 if there was no live policy with that id
+     */
+    @Transactional
+    public long delete(String policyId) {
+        PolicyRecord record = em.find(PolicyRecord.class, policyId);
+        if (record == null || record.isDeleted()) {
+            return 0L;
+        }
+        long revision = nextRevision();
+        record.setDeleted(true);
+        record.setConditions(null);
+        record.setRevision(revision);
+        return revision;
+    }
+
+    private long nextRevision() {
+        PolicyRevision counter = em.find(PolicyRevision.class, PolicyRevision.ID, LockModeType.PESSIMISTIC_WRITE);
+        if (counter == null) {
+            counter = new PolicyRevision();
+            em.persist(counter);
+        }
+        return counter.next();
+    }
+
+    static AbacPolicy toPolicy(PolicyRecord record) {
+        List<AbacPolicy.Condition> conditions = record.getConditions() == null ? null
+                : JSONB.fromJson(record.getConditions(), CONDITIONS);
+        AbacPolicy policy = new AbacPolicy(record.getId(), record.getName(), record.getEffect(), conditions);
+        policy.setDescription(record.getDescription());
+        return policy;
+    }
+}
@@ -0,0 +1,87 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, versioned policy set.
+ * <p>
+ * Every change produces a new snapshot with the next version, so an evaluation that read a snapshot
+ * sees exactly one policy set from start to finish and can report which one it was.
+ */
+final class PolicySnapshot {
+    static final PolicySnapshot EMPTY = new PolicySnapshot(0L, Map.of());
+
+    private final long version;
+    private final Map<String, CompiledPolicy> policies;
+    private final List<AbacPolicy> sources;
+    private final CompiledPolicySet compiled;
+
+    private PolicySnapshot(long version, Map<String, CompiledPolicy> policies) {
+        this.version = version;
+        this.policies = Collections.unmodifiableMap(policies);
+        this.sources = policies.values().stream().map(CompiledPolicy::source).toList();
+        this.compiled = new CompiledPolicySet(policies.values());
+    }
+
+    PolicySnapshot with(CompiledPolicy policy) {
+        Map<String, CompiledPolicy> next = new LinkedHashMap<>(policies);
+        next.put(policy.source().getId(), policy);
+        return new PolicySnapshot(version + 1, next);
+    }
+
+    PolicySnapshot without(String policyId) {
+        if (!policies.containsKey(policyId)) {
+            return this;
+        }
+        Map<String, CompiledPolicy> next = new LinkedHashMap<>(policies);
+        next.remove(policyId);
+        return new PolicySnapshot(version + 1, next);
+    }
+
+    PolicySnapshot withChanges(Collection<CompiledPolicy> upserts, Collection<String> removals) {
+        if (upserts.isEmpty() && removals.stream().noneMatch(policies::containsKey)) {
+            return this;
+        }
+        Map<String, CompiledPolicy> next = new LinkedHashMap<>(policies);
+        removals.forEach(next::remove);
+        upserts.forEach(policy -> next.put(policy.source().getId(), policy));
+        return new PolicySnapshot(version + 1, next);
+    }
+
+    PolicySnapshot replacedBy(Collection<CompiledPolicy> replacement) {
+        Map<String, CompiledPolicy> next = new LinkedHashMap<>(replacement.size() * 4 / 3 + 1);
+        replacement.forEach(policy -> next.put(policy.source().getId(), policy));
+        return new PolicySnapshot(version + 1, next);
+    }
+
+    PolicySnapshot cleared() {
+        return new PolicySnapshot(version + 1, Map.of());
+    }
+
+    long version() {
+        return version;
+    }
+
+    AbacPolicy policy(String policyId) {
+        CompiledPolicy policy = policies.get(policyId);
+        return policy == null ? null : policy.source();
+    }
+
+    List<AbacPolicy> policies() {
+        return sources;
+    }
+
+    Collection<CompiledPolicy> compiledPolicies() {
+        return policies.values();
+    }
+
+    CompiledPolicySet compiled() {
+        return compiled;
+    }
+}
@@ -0,0 +1,42 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime counters of one policy: how often it was evaluated and matched, and the time its conditions
+ * took on sampled evaluations. Shared by every compiled form of the same policy definition.
+ */
+final class PolicyStats {
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder sampledNanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+
+    void record(boolean matched) {
+        evaluations.increment();
+        if (matched) {
+            matches.increment();
+        }
+    }
+
+    void recordSample(long nanos) {
+        samples.increment();
+        sampledNanos.add(nanos);
+    }
+
+    long evaluations() {
+        return evaluations.sum();
+    }
+
+    long matches() {
+        return matches.sum();
+    }
+
+    /**
+     * Mean condition time over sampled evaluations, in nanoseconds; -1 before the first sample
+     */
+    long meanSampledNanos() {
+        long count = samples.sum();
+        return count == 0 ? -1L : sampledNanos.sum() / count;
+    }
+}
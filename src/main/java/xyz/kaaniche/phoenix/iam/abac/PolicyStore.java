@@ -1,36 +1,28 @@
 package xyz.kaaniche.phoenix.iam.abac;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
- * ABAC Policy Store - stores and manages policies
- * In production, this would integrate with a database or policy server
+ * ABAC Policy Store - in-memory view of the policies evaluated on this node
+ * Its content is loaded and kept in sync with the database by {@link PolicyReplicator}
+ * Policies are compiled when added and published as an immutable, versioned {@link PolicySnapshot}
+ * Writers swap the snapshot under the store lock; readers take the current one without copying
  */
 @ApplicationScoped
 public class PolicyStore {
     private static final Logger LOGGER = Logger.getLogger(PolicyStore.class.getName());
-    private final Map<String, AbacPolicy> policies = new ConcurrentHashMap<>();
+    private volatile PolicySnapshot snapshot = PolicySnapshot.EMPTY;
     
-    @PostConstruct
-    public void init() {
-        // Load default policies
-        loadDefaultPolicies();
-    }
-    
-    private void loadDefaultPolicies() {
-        // Example policies
-        
+    /**
+     * Policies seeded into an empty repository on first start
+     */
+    public static List<AbacPolicy> defaultPolicies() {
         // Policy 1: Admin users can access everything
         AbacPolicy adminPolicy = new AbacPolicy(
                 "policy-admin-full-access",
@@ -38,7 +30,6 @@ public class PolicyStore {
                 "PERMIT",
                 List.of(new AbacPolicy.Condition("user.role", "equals", "ADMIN"))
         );
-        addPolicy(adminPolicy);
         
         // Policy 2: Users can access their own resources
         AbacPolicy userSelfAccessPolicy = new AbacPolicy(
@@ -46,46 +37,96 @@ public class PolicyStore {
                 "User Self Access",
                 "PERMIT",
                 List.of(
-                        new AbacPolicy.Condition("user.id", "equals", "${resource.ownerId}"),
+                        AbacPolicy.Condition.compareAttributes("user.id", "equals", "resource.ownerId"),
                         new AbacPolicy.Condition("user.role", "in", List.of("USER", "ADMIN"))
                 )
         );
-        addPolicy(userSelfAccessPolicy);
         
-        // Policy 3: Deny access outside business hours (example)
-        AbacPolicy businessHoursPolicy = new AbacPolicy(
-                "policy-business-hours",
-                "Business Hours Only",
-                "DENY",
-                List.of(
-                        new AbacPolicy.Condition("environment.time.hour", "lessThan", 8),
-                        new AbacPolicy.Condition("resource.type", "equals", "sensitive-data")
-                )
-        );
-        // Don't add this one by default - it's just an example
+        // Policy 3 (example, not seeded): deny access to sensitive data outside business hours
+        //   environment.time.hour lessThan 8 and resource.type equals sensitive-data -> DENY
         
-        LOGGER.info("Loaded " + policies.size() + " default ABAC policies");
+        return List.of(adminPolicy, userSelfAccessPolicy);
     }
     
     public void addPolicy(AbacPolicy policy) {
-        policies.put(policy.getId(), policy);
-        LOGGER.info("Added policy: " + policy.getName());
+        CompiledPolicy compiled = PolicyCompiler.compile(policy);
+        long version;
+        synchronized (this) {
+            snapshot = snapshot.with(compiled);
+            version = snapshot.version();
+        }
+        LOGGER.info("Added policy: " + policy.getName() + " (policy set version " + version + ")");
     }
     
     public void removePolicy(String policyId) {
-        policies.remove(policyId);
-        LOGGER.info("Removed policy: " + policyId);
+        long version;
+        synchronized (this) {
+            snapshot = snapshot.without(policyId);
+            version = snapshot.version();
+        }
+        LOGGER.info("Removed policy: " + policyId + " (policy set version " + version + ")");
+    }
+    
+    /**
+     * Apply a batch of replicated changes as a single new snapshot
+     * Policies that no longer compile are skipped with a warning rather than failing the batch
+     */
+    public void apply(Collection<AbacPolicy> upserts, Collection<String> removals) {
+        List<CompiledPolicy> compiled = compileAll(upserts);
+        long version;
+        synchronized (this) {
+            snapshot = snapshot.withChanges(compiled, removals);
+            version = snapshot.version();
+        }
+        LOGGER.info("Applied " + compiled.size() + " policy updates and " + removals.size()
+                + " removals (policy set version " + version + ")");
+    }
+    
+    /**
+     * Replace the whole policy set, publishing one new snapshot
+     */
+    public void replaceAll(Collection<AbacPolicy> policies) {
+        List<CompiledPolicy> compiled = compileAll(policies);
+        long version;
+        synchronized (this) {
+            snapshot = snapshot.replacedBy(compiled);
+            version = snapshot.version();
+        }
+        LOGGER.info("Loaded " + compiled.size() + " ABAC policies (policy set version " + version + ")");
+    }
+    
+    private static List<CompiledPolicy> compileAll(Collection<AbacPolicy> policies) {
+        List<CompiledPolicy> compiled = new ArrayList<>(policies.size());
+        for (AbacPolicy policy : policies) {
+            try {
+                compiled.add(PolicyCompiler.compile(policy));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Skipping policy " + policy.getId() + ": " + e.getMessage());
+            }
+        }
+        return compiled;
     }
     
     public AbacPolicy getPolicy(String policyId) {
-        return policies.get(policyId);
+        return snapshot.policy(policyId);
     }
     
+    /**
+     * Policies of the current snapshot, as an immutable list
+     */
     public List<AbacPolicy> getAllPolicies() {
-        return new ArrayList<>(policies.values());
+        return snapshot.policies();
+    }
+    
+    public long getVersion() {
+        return snapshot.version();
+    }
+    
+    PolicySnapshot snapshot() {
+        return snapshot;
     }
     
-    public void clear() {
-        policies.clear();
+    public synchronized void clear() {
+        snapshot = snapshot.cleared();
     }
 }
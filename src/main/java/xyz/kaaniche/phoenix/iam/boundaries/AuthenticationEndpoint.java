@@ -21,9 +21,8 @@ import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.servlet.http.HttpServletRequest;
+import xyz.kaaniche.phoenix.iam.controllers.IdentityGrant;
 import xyz.kaaniche.phoenix.iam.controllers.PhoenixIAMRepository;
-import xyz.kaaniche.phoenix.iam.entities.Grant;
-import xyz.kaaniche.phoenix.iam.entities.Identity;
 import xyz.kaaniche.phoenix.iam.entities.Tenant;
 import xyz.kaaniche.phoenix.iam.security.Argon2Utility;
 import xyz.kaaniche.phoenix.iam.security.AuthorizationCode;
@@ -44,7 +43,6 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -81,7 +79,7 @@ public class AuthenticationEndpoint {
         if (clientId == null || clientId.isEmpty()) {
              return informUserAboutError("you should provide client_id");
         }
-        Tenant tenant = phoenixIAMRepository.findTenantByName(clientId);
+        Tenant tenant = phoenixIAMRepository.findTenantByName(clientId).orElse(null);
         if (tenant == null) {
              return informUserAboutError("Invalid cred"); //remove info leakage about tenant existence
         }
@@ -176,44 +174,35 @@ public class AuthenticationEndpoint {
         if (session == null) {
             return informUserAboutError("invalid_request : expired sign-in context");
         }
-        Identity identity = phoenixIAMRepository.findIdentityByUsername(username);
-        if (identity == null || !Argon2Utility.check(identity.getPassword(), password.toCharArray())) {//check if the identity is Null to prevent server error (prevent NPE)
-        logger.info("Failure when authenticating identity:" + username);
-         return informUserAboutError("User doesn't approved the request."); 
-           }      
-        if(Argon2Utility.check(identity.getPassword(),password.toCharArray())){
-            logger.info("Authenticated identity:"+username);
-            if (identity.isTotpEnabled()) {
-                if (totp == null || totp.isBlank() || !totpService.verifyCode(identity.getTotpSecret(), totp)) {
-                    return informUserAboutError("mfa_required : invalid or missing totp", Response.Status.UNAUTHORIZED);
-                }
-            }
-            Optional<Grant> grant = phoenixIAMRepository.findGrant(session.getTenantName(),identity.getId());
-            if(grant.isPresent()){
-                String redirectURI = buildActualRedirectURI(
-                        session.getRedirectUri(),session.getResponseType(),
-                        session.getTenantName(),
-                        username,
-                        checkUserScopes(grant.get().getApprovedScopes(),session.getRequestedScopes())
-                        ,session.getCodeChallenge(),session.getState()
-                );
-                loginSessionStore.delete(cookie.getValue());
-                return Response.seeOther(UriBuilder.fromUri(redirectURI).build()).build();
-            }else{
-                StreamingOutput stream = output -> {
-                    try (InputStream is = Objects.requireNonNull(getClass().getResource("/consent.html")).openStream()){
-                        output.write(is.readAllBytes());
-                    }
-                };
-                return Response.ok(stream).build();
+        IdentityGrant identity = phoenixIAMRepository.findIdentityGrant(username, session.getTenantName()).orElse(null);
+        // unknown identities are checked against a dummy hash, so both failures cost one Argon2 verification
+        if (!Argon2Utility.check(identity == null ? null : identity.password(), password.toCharArray())) {
+            logger.info("Failure when authenticating identity:" + username);
+            return informUserAboutError("User doesn't approved the request.");
+        }
+        logger.info("Authenticated identity:"+username);
+        if (identity.totpEnabled()) {
+            if (totp == null || totp.isBlank() || !totpService.verifyCode("identity:" + identity.identityId(), identity.totpSecret(), totp)) {
+                return informUserAboutError("mfa_required : invalid or missing totp", Response.Status.UNAUTHORIZED);
             }
-        } else {
-            logger.info("Failure when authenticating identity:"+username);
-            URI location = UriBuilder.fromUri(session.getRedirectUri())
-                    .queryParam("error", "User doesn't approved the request.")
-                    .queryParam("error_description", "User doesn't approved the request.")
-                    .build();
-            return Response.seeOther(location).build();
+        }
+        if(identity.hasGrant()){
+            String redirectURI = buildActualRedirectURI(
+                    session.getRedirectUri(),session.getResponseType(),
+                    session.getTenantName(),
+                    username,
+                    checkUserScopes(identity.approvedScopes(),session.getRequestedScopes())
+                    ,session.getCodeChallenge(),session.getState(),identity.roles()
+            );
+            loginSessionStore.delete(cookie.getValue());
+            return Response.seeOther(UriBuilder.fromUri(redirectURI).build()).build();
+        }else{
+            StreamingOutput stream = output -> {
+                try (InputStream is = Objects.requireNonNull(getClass().getResource("/consent.html")).openStream()){
+                    output.write(is.readAllBytes());
+                }
+            };
+            return Response.ok(stream).build();
         }
     }
 
@@ -251,7 +240,7 @@ public class AuthenticationEndpoint {
         try {
             String redirectUri = buildActualRedirectURI(
                     session.getRedirectUri(),session.getResponseType(),
-                    session.getTenantName(),username, String.join(" ", approvedScopes), session.getCodeChallenge(),session.getState()
+                    session.getTenantName(),username, String.join(" ", approvedScopes), session.getCodeChallenge(),session.getState(),null
             );
             loginSessionStore.delete(cookie.getValue());
             return Response.seeOther(UriBuilder.fromUri(redirectUri).build()).build();
@@ -260,11 +249,11 @@ public class AuthenticationEndpoint {
         }
     }
 
-    private String buildActualRedirectURI(String redirectUri,String responseType,String clientId,String userId,String approvedScopes,String codeChallenge,String state) throws Exception {
+    private String buildActualRedirectURI(String redirectUri,String responseType,String clientId,String userId,String approvedScopes,String codeChallenge,String state,Long roles) throws Exception {
         StringBuilder sb = new StringBuilder(redirectUri);
         if ("code".equals(responseType)) {
             AuthorizationCode authorizationCode = new AuthorizationCode(clientId,userId,
-                    approvedScopes, Instant.now().plus(2, ChronoUnit.MINUTES).getEpochSecond(),redirectUri);
+                    approvedScopes, Instant.now().plus(2, ChronoUnit.MINUTES).getEpochSecond(),redirectUri,roles);
             sb.append("?code=").append(URLEncoder.encode(authorizationCode.getCode(codeChallenge), StandardCharsets.UTF_8));
         } else {
             //Implicit: responseType=token : Not Supported
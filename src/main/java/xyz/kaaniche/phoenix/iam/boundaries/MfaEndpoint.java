@@ -40,7 +40,7 @@ public class MfaEndpoint {
                     .entity(Map.of("error", "username and password are required"))
                     .build();
         }
-        Identity identity = phoenixIAMRepository.findIdentityByUsername(username);
+        Identity identity = phoenixIAMRepository.findIdentityByUsername(username).orElse(null);
         if (identity == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Map.of("error", "user not found"))
@@ -88,7 +88,7 @@ public class MfaEndpoint {
                     .entity(Map.of("error", "username, password and code are required"))
                     .build();
         }
-        Identity identity = phoenixIAMRepository.findIdentityByUsername(username);
+        Identity identity = phoenixIAMRepository.findIdentityByUsername(username).orElse(null);
         if (identity == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Map.of("error", "user not found"))
@@ -104,7 +104,7 @@ public class MfaEndpoint {
                     .entity(Map.of("error", "totp is not enrolled"))
                     .build();
         }
-        if (!totpService.verifyCode(identity.getTotpSecret(), code)) {
+        if (!totpService.verifyCode("identity:" + identity.getId(), identity.getTotpSecret(), code)) {
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity(Map.of("error", "invalid totp code"))
                     .build();
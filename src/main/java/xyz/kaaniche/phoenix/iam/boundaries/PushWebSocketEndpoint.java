@@ -6,17 +6,31 @@ import jakarta.json.Json;
 import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
 import jakarta.websocket.*;
 import jakarta.websocket.server.ServerEndpoint;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
 import xyz.kaaniche.phoenix.iam.controllers.MessageEventManager;
 
-import java.io.IOException;
 import java.io.StringReader;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
+/**
+ * Push channel to browser clients.
+ * Broadcasts encode the message once and hand it to each session's bounded {@link SessionOutbox}, which sends
+ * through the async remote: the caller (typically the MQTT callback thread) never waits on a client, and a slow
+ * client only loses its own messages or its own connection (push.session.queue.size, push.session.overflow).
+ * MQTT messages are only delivered to sessions subscribed to a matching topic filter, looked up in a {@link TopicTrie}.
+ * A session starts with the push.default.topics filters; a client message {"subscribe":[...]} replaces them on
+ * its first use and adds filters afterwards, {"unsubscribe":[...]} removes filters.
+ */
 @ServerEndpoint(value = "/pushes",encoders = {PushWebSocketEndpoint.JSONTextEncoder.class},decoders = {PushWebSocketEndpoint.JSONTextDecoder.class})
 public class PushWebSocketEndpoint {
     @Inject
@@ -24,29 +38,66 @@ public class PushWebSocketEndpoint {
 
     @EJB
     private MessageEventManager messageEventManager;
-    private static final Set<Session> sessions = Collections.synchronizedSet(new HashSet<>());
+    private static final Config config = ConfigProvider.getConfig();
+    private static final int queueSize = config.getOptionalValue("push.session.queue.size",Integer.class).orElse(256);
+    private static final SessionOutbox.Overflow overflow = SessionOutbox.Overflow.valueOf(
+            config.getOptionalValue("push.session.overflow",String.class).orElse("DROP"));
+    private static final long sendTimeoutMillis = config.getOptionalValue("push.session.send.timeout.millis",Long.class).orElse(10_000L);
+    private static final List<String> defaultTopics = config.getOptionalValues("push.default.topics",String.class).orElse(List.of("#"));
+    private static final Map<String,SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    private static final TopicTrie<SessionOutbox> subscriptions = new TopicTrie<>();
+    private static final String TOPICS = "push.topics";
+    private static final String DEFAULT_TOPICS = "push.topics.default";
 
     public static void broadcastMessage(JsonObject message){
-        for(Session session: sessions){
-            try {
-                session.getBasicRemote().sendObject(message);
-            } catch (IOException | EncodeException e) {
-                throw new RuntimeException(e);
-            }
+        String text = message.toString();
+        for(SessionOutbox outbox: outboxes.values()){
+            outbox.offer(text);
+        }
+    }
+
+    /**
+     * Deliver a message published on {@code topic} to the sessions subscribed to it
+     */
+    public static void publish(String topic,JsonObject message){
+        Set<SessionOutbox> matched = subscriptions.match(topic);
+        if(matched.isEmpty()){
+            return;
+        }
+        String text = message.toString();
+        for(SessionOutbox outbox: matched){
+            outbox.offer(text);
         }
     }
 
     @OnOpen
     public void onOpen(Session session){
         log.info("Push WebSocket Opened: "+session.getId());
-        sessions.add(session);
+        session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+        SessionOutbox outbox = new SessionOutbox(session,queueSize,overflow);
+        outboxes.put(session.getId(),outbox);
+        Set<String> topics = new HashSet<>(defaultTopics);
+        session.getUserProperties().put(TOPICS,topics);
+        session.getUserProperties().put(DEFAULT_TOPICS,Boolean.TRUE);
+        for(String filter: topics){
+            subscriptions.subscribe(filter,outbox);
+        }
     }
 
     @OnClose
     public void onClose(Session session, CloseReason closeReason){
         log.info("Push WebSocket closed for "+session.getId()
                 +" with reason ["+closeReason.getCloseCode()+":"+closeReason.getReasonPhrase()+"]");
-        sessions.remove(session);
+        SessionOutbox outbox = outboxes.remove(session.getId());
+        if(outbox != null){
+            for(String filter: topics(session)){
+                subscriptions.unsubscribe(filter,outbox);
+            }
+            outbox.discard();
+            if(outbox.dropped() > 0){
+                log.warning("Push WebSocket "+session.getId()+" dropped "+outbox.dropped()+" messages");
+            }
+        }
     }
 
     @OnError
@@ -57,8 +108,58 @@ public class PushWebSocketEndpoint {
     @OnMessage
     public void onMessage(JsonObject message,Session session){
         if(session.isOpen() && session.isSecure()) {
-            messageEventManager.publishFromClient(message);
+            if(message.containsKey("subscribe") || message.containsKey("unsubscribe")){
+                updateSubscriptions(message,session);
+            }else {
+                messageEventManager.publishFromClient(message);
+            }
+        }
+    }
+
+    private void updateSubscriptions(JsonObject message,Session session){
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if(outbox == null){
+            return;
+        }
+        List<String> subscribe;
+        List<String> unsubscribe;
+        try {
+            subscribe = filters(message,"subscribe");
+            unsubscribe = filters(message,"unsubscribe");
+        }catch (IllegalArgumentException | ClassCastException e){
+            outbox.offer(Json.createObjectBuilder().add("error","Invalid subscription: "+e.getMessage()).build().toString());
+            return;
+        }
+        Set<String> topics = topics(session);
+        if(!subscribe.isEmpty() && session.getUserProperties().remove(DEFAULT_TOPICS) != null){
+            unsubscribe = new ArrayList<>(unsubscribe);
+            unsubscribe.addAll(topics);
+        }
+        for(String filter: unsubscribe){
+            if(topics.remove(filter)){
+                subscriptions.unsubscribe(filter,outbox);
+            }
+        }
+        for(String filter: subscribe){
+            if(topics.add(filter)){
+                subscriptions.subscribe(filter,outbox);
+            }
+        }
+    }
+
+    private static List<String> filters(JsonObject message,String key){
+        if(!message.containsKey(key)){
+            return List.of();
         }
+        List<String> filters = message.getJsonArray(key).getValuesAs(JsonString::getString);
+        filters.forEach(TopicTrie::validate);
+        return filters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> topics(Session session){
+        Object topics = session.getUserProperties().get(TOPICS);
+        return topics == null ? new HashSet<>() : (Set<String>) topics;
     }
 
     static final class JSONTextEncoder implements Encoder.Text<JsonObject> {
@@ -0,0 +1,146 @@
+package xyz.kaaniche.phoenix.iam.boundaries;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded outgoing queue of one push session, drained through the async remote one message at a time.
+ * <p>
+ * {@link #offer} never blocks: it either queues an already encoded message or rejects it when the queue is full.
+ * The next message is sent from the completion handler of the previous one. A full queue either drops the new
+ * message ({@link Overflow#DROP}) or marks the session to be closed with TRY_AGAIN_LATER once the message in
+ * flight completes ({@link Overflow#CLOSE}). A failed or timed out send closes the session as well.
+ */
+final class SessionOutbox {
+    private static final Logger LOGGER = Logger.getLogger(SessionOutbox.class.getName());
+
+    enum Overflow {
+        DROP, CLOSE
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final Overflow overflow;
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private volatile CloseReason closeReason;
+
+    SessionOutbox(Session session, int capacity, Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Push session queue size must be positive: " + capacity);
+        }
+        this.session = session;
+        this.capacity = capacity;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Queue an encoded message; false if it was dropped because the queue is full or the session is closing
+     */
+    boolean offer(String text) {
+        if (closeReason != null) {
+            return false;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            if (overflow == Overflow.CLOSE) {
+                closeLater(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Push queue overflow"));
+            }
+            return false;
+        }
+        queue.add(text);
+        drain();
+        return true;
+    }
+
+    /**
+     * Stop sending and forget queued messages, e.g. once the container reports the session closed
+     */
+    void discard() {
+        closed.set(true);
+        closeReason = new CloseReason(CloseReason.CloseCodes.GOING_AWAY, null);
+        queue.clear();
+        queued.set(0);
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    private void closeLater(CloseReason reason) {
+        if (closeReason == null) {
+            closeReason = reason;
+        }
+        // with nothing in flight no completion handler would pick the close up
+        drain();
+    }
+
+    private void drain() {
+        while (sending.compareAndSet(false, true)) {
+            if (closeReason != null) {
+                sending.set(false);
+                close();
+                return;
+            }
+            String next = queue.poll();
+            if (next == null) {
+                sending.set(false);
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue; // an offer raced with the flag reset and found us still sending
+            }
+            queued.decrementAndGet();
+            try {
+                session.getAsyncRemote().sendText(next, this::sent);
+                return;
+            } catch (RuntimeException e) {
+                sending.set(false);
+                closeLater(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Push send failed"));
+                return;
+            }
+        }
+    }
+
+    private void sent(SendResult result) {
+        sending.set(false);
+        if (!result.isOK()) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Push send to " + session.getId() + " failed", result.getException());
+            }
+            closeReason = new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Push send failed");
+        }
+        drain();
+    }
+
+    private void close() {
+        queue.clear();
+        queued.set(0);
+        if (!closed.compareAndSet(false, true) || !session.isOpen()) {
+            return;
+        }
+        try {
+            session.close(closeReason);
+        } catch (IOException e) {
+            LOGGER.fine("Closing push session " + session.getId() + " failed: " + e.getMessage());
+        }
+    }
+}
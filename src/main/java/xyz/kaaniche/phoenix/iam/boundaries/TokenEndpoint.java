@@ -1,29 +1,46 @@
 package xyz.kaaniche.phoenix.iam.boundaries;
 
 import jakarta.ejb.EJB;
+import jakarta.ejb.EJBException;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
+import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.FormParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.eclipse.microprofile.config.ConfigProvider;
 import xyz.kaaniche.phoenix.iam.controllers.PhoenixIAMRepository;
 import xyz.kaaniche.phoenix.iam.security.AuthorizationCode;
 import xyz.kaaniche.phoenix.iam.security.JwtManager;
+import xyz.kaaniche.phoenix.iam.store.RefreshTokenFamilyStore;
+import xyz.kaaniche.phoenix.iam.store.UsedCodeStore;
 
 import java.security.GeneralSecurityException;
 import java.text.ParseException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 @Path("/oauth/token")
 public class TokenEndpoint {
+    private static final Logger LOGGER = Logger.getLogger(TokenEndpoint.class.getName());
     private final Set<String> supportedGrantTypes = Set.of("authorization_code", "refresh_token");
     private static final Pattern CODE_VERIFIER_PATTERN = Pattern.compile("^[A-Za-z0-9\\-\\._~]{43,128}$");
 
@@ -33,12 +50,19 @@ public class TokenEndpoint {
     @EJB
     private JwtManager jwtManager;
 
+    @Inject
+    private UsedCodeStore usedCodeStore;
+
+    @Inject
+    private RefreshTokenFamilyStore refreshTokenFamilyStore;
+
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     public Response token(@FormParam("grant_type")String grantType,
                           @FormParam("code") String authCode,
-                          @FormParam("code_verifier")String codeVerifier) {
+                          @FormParam("code_verifier")String codeVerifier,
+                          @FormParam("refresh_token")String refreshTokenParam) {
         if (grantType == null || grantType.isEmpty())
             return responseError("Invalid_request", "grant_type is required", Response.Status.BAD_REQUEST);
 
@@ -46,40 +70,8 @@ public class TokenEndpoint {
             return responseError("unsupported_grant_type", "grant_type should be one of :" + supportedGrantTypes, Response.Status.BAD_REQUEST);
         }
         if("refresh_token".equals(grantType)){
-            var previousAccessToken = jwtManager.validateJWT(authCode);
-            var previousRefreshToken = jwtManager.validateJWT(codeVerifier);
-            if(previousAccessToken.isPresent() && previousRefreshToken.isPresent()){
-                try {
-                    var claimsSet = previousAccessToken.get().getJWTClaimsSet();
-                    var tenantId = claimsSet.getStringClaim("tenant_id");
-                    var subject = claimsSet.getSubject();
-                    var scopes = claimsSet.getStringClaim("scope");
-                    var roles = claimsSet.getStringArrayClaim(jwtManager.getClaimRoles());
-                    var accessToken = jwtManager.generateAccessToken(tenantId,subject,scopes,roles);
-                    var refreshToken = jwtManager.generateRefreshToken(tenantId,subject,scopes);
-                    var refreshClaimSet = previousRefreshToken.get().getJWTClaimsSet();
-                    var refreshSubject = refreshClaimSet.getSubject();
-                    var refreshTenantId = claimsSet.getStringClaim("tenant_id");
-                    var refreshScopes = claimsSet.getStringClaim("scope");
-                    if(refreshScopes.equals(scopes)&&refreshTenantId.equals(tenantId)&&refreshSubject.equals(subject)) {
-                        return Response.ok(Json.createObjectBuilder()
-                                        .add("token_type", "Bearer")
-                                        .add("access_token", accessToken)
-                                        .add("expires_in", ConfigProvider.getConfig().getValue("jwt.lifetime.duration", Integer.class))
-                                        .add("scope", scopes)
-                                        .add("refresh_token", refreshToken)
-                                        .build())
-                                .header("Cache-Control", "no-store")
-                                .header("Pragma", "no-cache")
-                                .build();
-                    }else {
-                        return responseError("Invalid_request", "Can't get token", Response.Status.UNAUTHORIZED);
-                    }
-                } catch (Exception e){
-                    throw new WebApplicationException(e);
-                }
-            }
-            return Response.ok().build();
+            // refresh_token is the RFC 6749 parameter; code_verifier is the legacy slot used by older clients
+            return refresh(refreshTokenParam != null ? refreshTokenParam : codeVerifier);
         }
         if (authCode == null || authCode.isEmpty()) {
             return responseError("invalid_request", "code is required", Response.Status.BAD_REQUEST);
@@ -95,9 +87,21 @@ public class TokenEndpoint {
             if (decoded == null) {
                 return responseError("invalid_grant", "code_verifier does not match code_challenge", Response.Status.BAD_REQUEST);
             }
+            if (decoded.expirationDate() < Instant.now().getEpochSecond()) {
+                return responseError("invalid_grant", "code has expired", Response.Status.BAD_REQUEST);
+            }
+            if (!usedCodeStore.markUsed(AuthorizationCode.codeId(authCode), decoded.expirationDate())) {
+                return responseError("invalid_grant", "code has already been used", Response.Status.BAD_REQUEST);
+            }
             String tenantName = decoded.tenantName();
-            String accessToken = jwtManager.generateAccessToken(tenantName, decoded.identityUsername(), decoded.approvedScopes(),phoenixIAMRepository.getRoles(decoded.identityUsername()));
-            String refreshToken = jwtManager.generateRefreshToken(tenantName, decoded.identityUsername(), decoded.approvedScopes());
+            String[] roles = decoded.roles() != null
+                    ? phoenixIAMRepository.toRoleNames(decoded.roles())
+                    : phoenixIAMRepository.getRoles(decoded.identityUsername());
+            String accessToken = jwtManager.generateAccessToken(tenantName, decoded.identityUsername(), decoded.approvedScopes(), roles);
+            String familyId = UUID.randomUUID().toString();
+            String refreshJti = UUID.randomUUID().toString();
+            String refreshToken = jwtManager.generateRefreshToken(tenantName, decoded.identityUsername(), decoded.approvedScopes(), familyId, refreshJti);
+            refreshTokenFamilyStore.register(familyId, refreshJti, Instant.now().getEpochSecond() + jwtManager.getRefreshTokenLifetimeDuration());
             return Response.ok(Json.createObjectBuilder()
                             .add("token_type", "Bearer")
                             .add("access_token", accessToken)
@@ -116,6 +120,114 @@ public class TokenEndpoint {
             return responseError("Invalid_request", "Can't get token", Response.Status.INTERNAL_SERVER_ERROR);
         }
     }
+    /**
+     * Rotate a refresh token: only the family's current token is accepted, and it is exchanged for a new one.
+     * Replaying an already rotated token revokes the whole family.
+     */
+    private Response refresh(String presentedRefreshToken) {
+        if (presentedRefreshToken == null || presentedRefreshToken.isEmpty()) {
+            return responseError("invalid_request", "refresh_token is required", Response.Status.BAD_REQUEST);
+        }
+        try {
+            var validated = jwtManager.validateJWT(presentedRefreshToken);
+            if (validated.isEmpty()) {
+                return responseError("invalid_grant", "refresh_token is invalid or expired", Response.Status.BAD_REQUEST);
+            }
+            var claimsSet = validated.get().getJWTClaimsSet();
+            String familyId = claimsSet.getStringClaim("fid");
+            String jti = claimsSet.getJWTID();
+            if (familyId == null || jti == null) {
+                return responseError("invalid_grant", "not a refresh token", Response.Status.BAD_REQUEST);
+            }
+            String nextJti = UUID.randomUUID().toString();
+            long expiresAt = Instant.now().getEpochSecond() + jwtManager.getRefreshTokenLifetimeDuration();
+            switch (refreshTokenFamilyStore.rotate(familyId, jti, nextJti, expiresAt)) {
+                case REUSED -> {
+                    LOGGER.warning("Refresh token reuse detected, revoked family " + familyId + " of " + claimsSet.getSubject());
+                    return responseError("invalid_grant", "refresh_token has already been used", Response.Status.BAD_REQUEST);
+                }
+                case UNKNOWN -> {
+                    return responseError("invalid_grant", "refresh_token has been revoked", Response.Status.BAD_REQUEST);
+                }
+                default -> {
+                }
+            }
+            String tenantId = claimsSet.getStringClaim("tenant_id");
+            String subject = claimsSet.getSubject();
+            String scopes = claimsSet.getStringClaim("scope");
+            String accessToken = jwtManager.generateAccessToken(tenantId, subject, scopes, phoenixIAMRepository.getRoles(subject));
+            String refreshToken = jwtManager.generateRefreshToken(tenantId, subject, scopes, familyId, nextJti);
+            return Response.ok(Json.createObjectBuilder()
+                            .add("token_type", "Bearer")
+                            .add("access_token", accessToken)
+                            .add("expires_in", ConfigProvider.getConfig().getValue("jwt.lifetime.duration", Integer.class))
+                            .add("scope", scopes)
+                            .add("refresh_token", refreshToken)
+                            .build())
+                    .header("Cache-Control", "no-store")
+                    .header("Pragma", "no-cache")
+                    .build();
+        } catch (EJBException | ParseException e) {
+            return responseError("invalid_grant", "refresh_token is invalid", Response.Status.BAD_REQUEST);
+        } catch (Exception e) {
+            return responseError("Invalid_request", "Can't get token", Response.Status.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Admin-only batch issuance: {@code [{"tenant_id", "subject", "scope", "roles": [...]}, ...]}.
+     * Tokens are signed with one key pair and streamed back as a JSON array in request order.
+     */
+    @POST
+    @Path("/batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response batch(JsonArray requests, @Context SecurityContext securityContext) {
+        if (securityContext.getUserPrincipal() == null ||
+            !securityContext.isUserInRole("ADMIN")) {
+            return responseError("access_denied", "Admin role required", Response.Status.FORBIDDEN);
+        }
+        if (requests == null || requests.isEmpty() || requests.size() > jwtManager.getBatchMaxSize()) {
+            return responseError("invalid_request", "between 1 and " + jwtManager.getBatchMaxSize() + " token requests are required", Response.Status.BAD_REQUEST);
+        }
+        List<JwtManager.AccessTokenRequest> tokenRequests = new ArrayList<>(requests.size());
+        for (JsonValue value : requests) {
+            if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                return responseError("invalid_request", "token requests must be objects", Response.Status.BAD_REQUEST);
+            }
+            JsonObject request = value.asJsonObject();
+            String subject = request.getString("subject", null);
+            String tenantId = request.getString("tenant_id", null);
+            if (subject == null || tenantId == null) {
+                return responseError("invalid_request", "tenant_id and subject are required", Response.Status.BAD_REQUEST);
+            }
+            JsonArray roles = request.getJsonArray("roles");
+            tokenRequests.add(new JwtManager.AccessTokenRequest(tenantId, subject, request.getString("scope", ""),
+                    roles == null ? new String[0] : roles.getValuesAs(JsonString::getString).toArray(new String[0])));
+        }
+        Iterator<String> tokens = jwtManager.generateAccessTokens(tokenRequests).iterator();
+        int expiresIn = ConfigProvider.getConfig().getValue("jwt.lifetime.duration", Integer.class);
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = Json.createGenerator(output)) {
+                generator.writeStartArray();
+                for (JwtManager.AccessTokenRequest request : tokenRequests) {
+                    generator.writeStartObject()
+                            .write("subject", request.subject())
+                            .write("token_type", "Bearer")
+                            .write("access_token", tokens.next())
+                            .write("expires_in", expiresIn)
+                            .write("scope", request.approvedScopes())
+                            .writeEnd();
+                }
+                generator.writeEnd();
+            }
+        };
+        return Response.ok(stream)
+                .header("Cache-Control", "no-store")
+                .header("Pragma", "no-cache")
+                .build();
+    }
+
     private Response responseError(String error, String errorDescription, Response.Status status) {
         JsonObject errorResponse = Json.createObjectBuilder()
                 .add("error", error)
@@ -0,0 +1,114 @@
+package xyz.kaaniche.phoenix.iam.boundaries;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subscribers indexed by MQTT topic filter, one trie level per topic level.
+ * <p>
+ * {@code +} matches exactly one level and {@code #}, only allowed as the last level, matches the parent level and
+ * everything below it. As in MQTT, wildcards in the first level do not match topics starting with {@code $}.
+ * {@link #match} follows at most the exact, {@code +} and {@code #} children of each node, so its cost grows with
+ * the depth of the topic, not with the number of subscribers. Lookups take no lock; changes are serialized.
+ */
+final class TopicTrie<T> {
+    private static final String SINGLE = "+";
+    private static final String MULTI = "#";
+
+    private final Node<T> root = new Node<>();
+
+    private static final class Node<T> {
+        final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        final Set<T> subscribers = ConcurrentHashMap.newKeySet();
+
+        boolean isEmpty() {
+            return children.isEmpty() && subscribers.isEmpty();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code filter} is not a valid MQTT topic filter
+     */
+    synchronized void subscribe(String filter, T subscriber) {
+        Node<T> node = root;
+        for (String level : levels(filter)) {
+            node = node.children.computeIfAbsent(level, l -> new Node<>());
+        }
+        node.subscribers.add(subscriber);
+    }
+
+    synchronized void unsubscribe(String filter, T subscriber) {
+        unsubscribe(root, levels(filter), 0, subscriber);
+    }
+
+    /**
+     * Remove the subscriber and prune the branch it leaves empty
+     */
+    private static <T> void unsubscribe(Node<T> node, String[] levels, int depth, T subscriber) {
+        if (depth == levels.length) {
+            node.subscribers.remove(subscriber);
+            return;
+        }
+        Node<T> child = node.children.get(levels[depth]);
+        if (child != null) {
+            unsubscribe(child, levels, depth + 1, subscriber);
+            if (child.isEmpty()) {
+                node.children.remove(levels[depth]);
+            }
+        }
+    }
+
+    /**
+     * Every subscriber with at least one filter matching {@code topic}, each once
+     */
+    Set<T> match(String topic) {
+        Set<T> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        collect(root, topic.split("/", -1), 0, !topic.startsWith("$"), matched);
+        return matched;
+    }
+
+    private static <T> void collect(Node<T> node, String[] levels, int depth, boolean wildcards, Set<T> matched) {
+        boolean wildcard = wildcards || depth > 0;
+        Node<T> multi = wildcard ? node.children.get(MULTI) : null;
+        if (multi != null) {
+            matched.addAll(multi.subscribers);
+        }
+        if (depth == levels.length) {
+            matched.addAll(node.subscribers);
+            return;
+        }
+        Node<T> exact = node.children.get(levels[depth]);
+        if (exact != null) {
+            collect(exact, levels, depth + 1, wildcards, matched);
+        }
+        Node<T> single = wildcard ? node.children.get(SINGLE) : null;
+        if (single != null) {
+            collect(single, levels, depth + 1, wildcards, matched);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code filter} is not a valid MQTT topic filter
+     */
+    static void validate(String filter) {
+        levels(filter);
+    }
+
+    private static String[] levels(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            throw new IllegalArgumentException("Topic filter must not be empty");
+        }
+        String[] levels = filter.split("/", -1);
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            boolean wildcardLevel = SINGLE.equals(level) || MULTI.equals(level) && i == levels.length - 1;
+            if (!wildcardLevel && (level.contains(SINGLE) || level.contains(MULTI))) {
+                throw new IllegalArgumentException("Illegal wildcard in topic filter: " + filter);
+            }
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,13 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+/**
+ * Login-time projection of an identity and its grant for one tenant, loaded in a single query.
+ * {@code approvedScopes} is null when the identity has not yet granted the tenant.
+ */
+public record IdentityGrant(Long identityId, String username, String password, Long roles,
+                            String totpSecret, boolean totpEnabled, String approvedScopes) {
+
+    public boolean hasGrant() {
+        return approvedScopes != null;
+    }
+}
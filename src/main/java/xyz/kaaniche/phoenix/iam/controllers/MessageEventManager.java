@@ -124,7 +124,7 @@ public class MessageEventManager {
 
 
     public void consumeMQTTMessage(@Observes @MessageEvent(MessageEvent.Type.MQTT)JsonObject mqttMessage){
-        PushWebSocketEndpoint.broadcastMessage(mqttMessage);
+        PushWebSocketEndpoint.publish(mqttMessage.getString("topic"),mqttMessage);
         /*Alternatively:
         String topic =  mqttMessage.getString("topic");
         switch (topic){
@@ -138,7 +138,7 @@ public class MessageEventManager {
                 //doSomething
                 break;
             default:
-                PushWebSocketEndpoint.broadcastMessage(mqttMessage);
+                PushWebSocketEndpoint.publish(topic,mqttMessage);
         }
         OR Call a Customized MessageDispatcher
         */
@@ -0,0 +1,111 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.eclipse.microprofile.config.Config;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable (action, entity type, id) lookup compiled per role bitmask.
+ * <p>
+ * Grants are declared as {@code permissions=Role:ACTION:Entity[:id],...}, where ACTION may be {@code *} and a missing id
+ * covers every instance of the entity (matched by simple class name). A role set is compiled once into
+ * an action-indexed table and cached under its bitmask, so an authorization check is three hash lookups.
+ * Root may do anything; unknown role names and undeclared grants deny.
+ */
+final class PermissionIndex {
+    private static final int MAX_CACHED_MASKS = 1024;
+    private static final String ANY = "*";
+    private static final Table ALLOW_ALL = new Table(null);
+    private static final Table DENY_ALL = new Table(new EnumMap<>(Action.class));
+
+    private final Map<Long, List<Grant>> grantsByRoleBit;
+    private final Map<Long, Table> cache = new ConcurrentHashMap<>();
+
+    enum Action {
+        SAVE, EDIT, DELETE
+    }
+
+    record Grant(Action action, String entity, String id) {
+    }
+
+    PermissionIndex(Map<Role, List<Grant>> grants) {
+        Map<Long, List<Grant>> byBit = new HashMap<>();
+        grants.forEach((role, roleGrants) -> byBit.put(role.getValue(), List.copyOf(roleGrants)));
+        this.grantsByRoleBit = Map.copyOf(byBit);
+    }
+
+    static PermissionIndex load(Config config) {
+        Map<Role, List<Grant>> grants = new EnumMap<>(Role.class);
+        for (String entry : config.getOptionalValues("permissions", String.class).orElse(List.of())) {
+            String[] parts = entry.trim().split(":");
+            Role role = parts.length < 3 ? null : Role.byId(parts[0]);
+            if (role == null || parts.length > 4) {
+                throw new IllegalArgumentException("Illegal permissions entry: " + entry);
+            }
+            String id = parts.length == 4 ? parts[3] : null;
+            List<Action> actions = ANY.equals(parts[1]) ? List.of(Action.values()) : List.of(Action.valueOf(parts[1]));
+            for (Action action : actions) {
+                grants.computeIfAbsent(role, r -> new ArrayList<>()).add(new Grant(action, parts[2], id));
+            }
+        }
+        return new PermissionIndex(grants);
+    }
+
+    boolean allows(long roles, Action action, Class<?> type, Object id) {
+        return table(roles).allows(action, type.getSimpleName(), id == null ? null : id.toString());
+    }
+
+    private Table table(long roles) {
+        if (roles == Long.MAX_VALUE) {
+            return ALLOW_ALL;
+        }
+        if (roles <= 0L) {
+            return DENY_ALL;
+        }
+        Table table = cache.get(roles);
+        if (table == null) {
+            table = compile(roles);
+            if (cache.size() < MAX_CACHED_MASKS) {
+                cache.putIfAbsent(roles, table);
+            }
+        }
+        return table;
+    }
+
+    private Table compile(long roles) {
+        Map<Action, Map<String, Set<String>>> mutable = new EnumMap<>(Action.class);
+        for (long remaining = roles; remaining != 0L; remaining &= remaining - 1) {
+            for (Grant grant : grantsByRoleBit.getOrDefault(Long.lowestOneBit(remaining), List.of())) {
+                Set<String> ids = mutable.computeIfAbsent(grant.action(), a -> new HashMap<>())
+                        .computeIfAbsent(grant.entity(), e -> new HashSet<>());
+                ids.add(grant.id() == null ? ANY : grant.id());
+            }
+        }
+        Map<Action, Map<String, Set<String>>> frozen = new EnumMap<>(Action.class);
+        mutable.forEach((action, byEntity) -> {
+            Map<String, Set<String>> entities = new HashMap<>();
+            // a wildcard grant makes the id list irrelevant
+            byEntity.forEach((entity, ids) -> entities.put(entity, ids.contains(ANY) ? Set.of(ANY) : Set.copyOf(ids)));
+            frozen.put(action, Map.copyOf(entities));
+        });
+        return new Table(frozen);
+    }
+
+    private record Table(Map<Action, Map<String, Set<String>>> byAction) {
+        boolean allows(Action action, String entity, String id) {
+            if (byAction == null) {
+                return true;
+            }
+            Map<String, Set<String>> byEntity = byAction.get(action);
+            Set<String> ids = byEntity == null ? null : byEntity.get(entity);
+            return ids != null && (ids.contains(ANY) || id != null && ids.contains(id));
+        }
+    }
+}
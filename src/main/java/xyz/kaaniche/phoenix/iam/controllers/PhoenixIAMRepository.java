@@ -9,52 +9,69 @@ import xyz.kaaniche.phoenix.iam.entities.Grant;
 import xyz.kaaniche.phoenix.iam.entities.Identity;
 import xyz.kaaniche.phoenix.iam.entities.Tenant;
 
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 
 @Singleton
 public class PhoenixIAMRepository {
     @Inject
     private EntityManager entityManager;
 
-    public Tenant findTenantByName(String name){
-        return entityManager.createQuery("select t from Tenant t where name =:name",Tenant.class)
+    @Inject
+    private TenantCache tenantCache;
+
+    /**
+     * Unknown names resolve to an empty Optional rather than a NoResultException,
+     * so probing for tenants or users stays off the exception path.
+     * getSingleResultOrNull relies on the unique index; getResultStream would open a scroll per call.
+     */
+    public Optional<Tenant> findTenantByName(String name){
+        Tenant cached = tenantCache.byName(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Tenant> tenant = Optional.ofNullable(entityManager.createNamedQuery(Tenant.FIND_BY_NAME,Tenant.class)
                 .setParameter("name",name)
-                .getSingleResult();
+                .getSingleResultOrNull());
+        tenant.ifPresent(tenantCache::put);
+        return tenant;
     }
 
-    public Identity findIdentityByUsername(String username){
-        return entityManager.createQuery("select i from Identity i where username=:username",Identity.class)
+    public Optional<Identity> findIdentityByUsername(String username){
+        return Optional.ofNullable(entityManager.createNamedQuery(Identity.FIND_BY_USERNAME,Identity.class)
                 .setParameter("username",username)
-                .getSingleResult();
+                .getSingleResultOrNull());
+    }
+
+    /**
+     * Identity, role bitmask and grant for {@code tenantName} in one query (the tenant itself comes from the cache)
+     */
+    public Optional<IdentityGrant> findIdentityGrant(String username, String tenantName){
+        Tenant tenant = findTenantByName(tenantName).orElse(null);
+        if (tenant == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(entityManager.createNamedQuery(Identity.GRANT_BY_USERNAME, IdentityGrant.class)
+                .setParameter("tenantId", tenant.getId())
+                .setParameter("username", username)
+                .getSingleResultOrNull());
     }
 
     public Optional<Grant> findGrant(String tenantName,Long identityId){
-        Tenant tenant = findTenantByName(tenantName);
-        if(tenant==null){
-            throw new IllegalArgumentException("Invalid Client Id!");
-        }
-        return Optional.of(entityManager.createQuery("select g from Grant g where g.id.tenantId =:tenantId and g.id.identityId = :identityId",Grant.class)
+        Tenant tenant = findTenantByName(tenantName)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid Client Id!"));
+        return Optional.ofNullable(entityManager.createNamedQuery(Grant.FIND_BY_TENANT_AND_IDENTITY,Grant.class)
                 .setParameter("tenantId",tenant.getId())
                 .setParameter("identityId",identityId)
-                .getSingleResult());
+                .getSingleResultOrNull());
     }
     public String[] getRoles(String username){
-        TypedQuery<Long> query = entityManager.createQuery("select i.roles from Identity i where username=:username",Long.class);
+        TypedQuery<Long> query = entityManager.createNamedQuery(Identity.ROLES_BY_USERNAME,Long.class);
         query.setParameter("username",username);
-        Long roles = query.getSingleResult();
-        Set<String> ret = new HashSet<>();
-        for(Role role:Role.values()){
-            if((roles&role.getValue())!=0L){
-                String value = Role.byValue(role.getValue());
-                if (value==null){
-                    continue;
-                }
-                ret.add(value);
-            }
-        }
-        return ret.toArray(new String[0]);
+        return toRoleNames(query.getSingleResult());
+    }
+
+    public String[] toRoleNames(long roles){
+        return RoleCodec.toArray(roles);
     }
 
     @Transactional
@@ -29,10 +29,9 @@ public class PhoenixIdentityStore implements IdentityStore {
     private CredentialValidationResult validate(UsernamePasswordCredential upc){
         try {
             Identity identity = entityManager.
-                    createQuery("select i from Identity i where i.username = :username",Identity.class).
-                    setParameter("username",upc.getCaller()).getSingleResult();
-            Objects.requireNonNull(identity,"Identity should be not null");
-            if(Argon2Utility.check(identity.getPassword(),upc.getPassword().getValue())){
+                    createNamedQuery(Identity.FIND_BY_USERNAME,Identity.class).
+                    setParameter("username",upc.getCaller()).getSingleResultOrNull();
+            if(Argon2Utility.check(identity == null ? null : identity.getPassword(),upc.getPassword().getValue())){
                 return new CredentialValidationResult(upc.getCaller(),toCallerGroups(identity.getRoles()));
             }
             return CredentialValidationResult.INVALID_RESULT;
@@ -42,18 +41,7 @@ public class PhoenixIdentityStore implements IdentityStore {
     }
 
     private Set<String> toCallerGroups(Long roles){
-        if(roles == 0L) return Collections.singleton(Role.GUEST.id());
-        if(roles == Long.MAX_VALUE) return Collections.singleton(Role.ROOT.id());
-        if (roles<0L){
-            throw new IllegalArgumentException("Permission level cannot be negative");
-        }
-        Set<String> ret = new HashSet<>();
-        for(long value = 1L; value<=62L; ++value){
-            if((value&roles) !=0){
-                ret.add(Role.byValue(value));
-            }
-        }
-        return ret;
+        return RoleCodec.decode(roles);
     }
 
     @Override
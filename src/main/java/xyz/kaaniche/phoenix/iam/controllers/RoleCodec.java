@@ -0,0 +1,81 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes role bitmasks into role names (and encodes them back).
+ * Bit names are precomputed from {@link Role} once; set bits are walked with {@link Long#numberOfTrailingZeros(long)},
+ * and the immutable result of frequently seen masks is cached (most identities share a handful of role combinations).
+ */
+public final class RoleCodec {
+    private static final int MAX_CACHED_MASKS = 1024;
+    private static final String[] bitNames = new String[Long.SIZE - 1];
+    private static final Set<String> guest = Set.of(Role.GUEST.id());
+    private static final Set<String> root = Set.of(Role.ROOT.id());
+    private static final Map<Long, Set<String>> cache = new ConcurrentHashMap<>();
+
+    static {
+        for (int bit = 0; bit < bitNames.length; bit++) {
+            bitNames[bit] = Role.byValue(1L << bit);
+        }
+    }
+
+    private RoleCodec() {
+    }
+
+    /**
+     * @return the immutable set of role names for {@code roles}: guest for 0, root for {@link Long#MAX_VALUE}
+     */
+    public static Set<String> decode(long roles) {
+        if (roles == 0L) return guest;
+        if (roles == Long.MAX_VALUE) return root;
+        if (roles < 0L) {
+            throw new IllegalArgumentException("Permission level cannot be negative");
+        }
+        Set<String> names = cache.get(roles);
+        if (names != null) {
+            return names;
+        }
+        names = compute(roles);
+        if (cache.size() < MAX_CACHED_MASKS) {
+            cache.putIfAbsent(roles, names);
+        }
+        return names;
+    }
+
+    /**
+     * @return the bitmask of the known role names in {@code names} (unknown names are ignored, null is guest)
+     */
+    public static long encode(Collection<String> names) {
+        long roles = 0L;
+        if (names != null) {
+            for (String name : names) {
+                Role role = Role.byId(name);
+                if (role != null) {
+                    roles |= role.getValue();
+                }
+            }
+        }
+        return roles;
+    }
+
+    public static String[] toArray(long roles) {
+        return decode(roles).toArray(new String[0]);
+    }
+
+    private static Set<String> compute(long roles) {
+        Set<String> names = new LinkedHashSet<>(Long.bitCount(roles) * 2);
+        for (long remaining = roles; remaining != 0L; remaining &= remaining - 1) {
+            String name = bitNames[Long.numberOfTrailingZeros(remaining)];
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
@@ -0,0 +1,67 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tenant metadata cache keyed by name.
+ * Entries are immutable copies of the tenant's columns and every hit returns a new detached {@link Tenant},
+ * so no two requests share (or can modify) the same instance.
+ * Nothing evicts an entry early: a tenant changed in the database can be served stale for up to
+ * {@code tenant.cache.ttl.seconds}.
+ */
+@ApplicationScoped
+public class TenantCache {
+    private final long ttlMillis = ConfigProvider.getConfig()
+            .getOptionalValue("tenant.cache.ttl.seconds", Long.class).orElse(300L) * 1000L;
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+
+    public Tenant byName(String name) {
+        if (name == null) {
+            return null;
+        }
+        Entry entry = byName.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis < System.currentTimeMillis()) {
+            byName.remove(name, entry);
+            return null;
+        }
+        return entry.tenant.toTenant();
+    }
+
+    public void put(Tenant tenant) {
+        if (ttlMillis <= 0 || tenant == null || tenant.getName() == null) {
+            return;
+        }
+        byName.put(tenant.getName(), new Entry(TenantData.of(tenant), System.currentTimeMillis() + ttlMillis));
+    }
+
+    private record Entry(TenantData tenant, long expiresAtMillis) {
+    }
+
+    private record TenantData(Short id, String name, String secret, String redirectUri, Long allowedRoles,
+                              String requiredScopes, String supportedGrantTypes) {
+        static TenantData of(Tenant tenant) {
+            return new TenantData(tenant.getId(), tenant.getName(), tenant.getSecret(), tenant.getRedirectUri(),
+                    tenant.getAllowedRoles(), tenant.getRequiredScopes(), tenant.getSupportedGrantTypes());
+        }
+
+        Tenant toTenant() {
+            Tenant tenant = new Tenant();
+            tenant.setId(id);
+            tenant.setName(name);
+            tenant.setSecret(secret);
+            tenant.setRedirectUri(redirectUri);
+            tenant.setAllowedRoles(allowedRoles);
+            tenant.setRequiredScopes(requiredScopes);
+            tenant.setSupportedGrantTypes(supportedGrantTypes);
+            return tenant;
+        }
+    }
+}
@@ -7,7 +7,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "issued_grants")
+@NamedQuery(name = Grant.FIND_BY_TENANT_AND_IDENTITY,
+        query = "select g from Grant g where g.id.tenantId = :tenantId and g.id.identityId = :identityId")
 public class Grant extends CompoundPKEntity<GrantPK> {
+    public static final String FIND_BY_TENANT_AND_IDENTITY = "Grant.findByTenantAndIdentity";
+
     @MapsId("tenantId")
     @ManyToOne
     private Tenant tenant;
@@ -2,15 +2,27 @@ package xyz.kaaniche.phoenix.iam.entities;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
 import xyz.kaaniche.phoenix.core.entities.SimplePKEntity;
 
 import java.security.Principal;
 
 @Entity
-@Table(name = "identities")
+@Table(name = "identities", indexes = @Index(name = "ux_identities_username", columnList = "username", unique = true))
+@NamedQuery(name = Identity.FIND_BY_USERNAME, query = "select i from Identity i where i.username = :username")
+@NamedQuery(name = Identity.ROLES_BY_USERNAME, query = "select i.roles from Identity i where i.username = :username")
+@NamedQuery(name = Identity.GRANT_BY_USERNAME, query = "select new xyz.kaaniche.phoenix.iam.controllers.IdentityGrant("
+        + "i.id, i.username, i.password, i.roles, i.totpSecret, i.totpEnabled, g.approvedScopes) "
+        + "from Identity i left join Grant g on g.id.identityId = i.id and g.id.tenantId = :tenantId "
+        + "where i.username = :username")
 public class Identity extends SimplePKEntity<Long> implements Principal {
-    @Column(length = 191,unique = true,nullable = false)
+    public static final String FIND_BY_USERNAME = "Identity.findByUsername";
+    public static final String ROLES_BY_USERNAME = "Identity.rolesByUsername";
+    public static final String GRANT_BY_USERNAME = "Identity.grantByUsername";
+
+    @Column(length = 191,nullable = false)
     private String username;
     @Column(nullable = false)
     private String password;
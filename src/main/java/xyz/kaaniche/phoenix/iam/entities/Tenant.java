@@ -1,14 +1,21 @@
 package xyz.kaaniche.phoenix.iam.entities;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
 import xyz.kaaniche.phoenix.core.entities.SimplePKEntity;
 
 @Entity
-@Table(name = "tenants")
+@Cacheable
+@Table(name = "tenants", indexes = @Index(name = "ux_tenants_tenant_id", columnList = "tenant_id", unique = true))
+@NamedQuery(name = Tenant.FIND_BY_NAME, query = "select t from Tenant t where t.name = :name")
 public class Tenant extends SimplePKEntity<Short> {
-    @Column(name = "tenant_id",nullable = false,unique = true,length = 191)
+    public static final String FIND_BY_NAME = "Tenant.findByName";
+
+    @Column(name = "tenant_id",nullable = false,length = 191)
     private String name;
     @Column(name = "tenant_secret", nullable = false)
     private String secret;
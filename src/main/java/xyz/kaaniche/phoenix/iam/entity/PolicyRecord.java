@@ -0,0 +1,95 @@
+package xyz.kaaniche.phoenix.iam.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Stored ABAC policy. Every write stamps the row with the next policy-set revision, and deletions
+ * are kept as tombstones, so "revision greater than N" is the change feed other nodes poll.
+ */
+@Entity
+@Table(name = "abac_policies", indexes = @Index(name = "ix_abac_policies_revision", columnList = "revision", unique = true))
+@NamedQuery(name = PolicyRecord.ACTIVE_PAGE, query = "SELECT p FROM PolicyRecord p "
+        + "WHERE p.revision > :after AND p.revision <= :upTo AND p.deleted = false ORDER BY p.revision")
+@NamedQuery(name = PolicyRecord.CHANGES_AFTER, query = "SELECT p FROM PolicyRecord p WHERE p.revision > :after ORDER BY p.revision")
+public class PolicyRecord {
+    public static final String ACTIVE_PAGE = "PolicyRecord.activePage";
+    public static final String CHANGES_AFTER = "PolicyRecord.changesAfter";
+
+    @Id
+    @Column(name = "policy_id", length = 191)
+    private String id;
+
+    @Column(nullable = false)
+    private String name;
+
+    private String description;
+
+    @Column(nullable = false, length = 16)
+    private String effect;
+
+    // JSON array of AbacPolicy.Condition
+    @Column(name = "conditions", length = 8192)
+    private String conditions;
+
+    @Column(nullable = false)
+    private long revision;
+
+    @Column(nullable = false)
+    private boolean deleted;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getEffect() {
+        return effect;
+    }
+
+    public void setEffect(String effect) {
+        this.effect = effect;
+    }
+
+    public String getConditions() {
+        return conditions;
+    }
+
+    public void setConditions(String conditions) {
+        this.conditions = conditions;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+}
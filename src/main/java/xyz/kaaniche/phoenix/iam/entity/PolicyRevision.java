@@ -0,0 +1,31 @@
+package xyz.kaaniche.phoenix.iam.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Single-row counter of the stored policy set. Writers take it with a pessimistic lock, so revisions
+ * are handed out and committed in the same order and a poller never skips a late-committing change.
+ */
+@Entity
+@Table(name = "abac_policy_revision")
+public class PolicyRevision {
+    public static final long ID = 1L;
+
+    @Id
+    private Long id = ID;
+
+    @Column(nullable = false)
+    private long revision;
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public long next() {
+        return ++revision;
+    }
+}
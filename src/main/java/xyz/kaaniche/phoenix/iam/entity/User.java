@@ -7,9 +7,23 @@ import java.util.Set;
 
 @Entity
 @Table(name = "users")
+@NamedQuery(name = User.FIND_BY_USERNAME, query = "SELECT u FROM User u WHERE u.username = :username")
+@NamedQuery(name = User.SUMMARIES_AFTER, query = "SELECT new xyz.kaaniche.phoenix.iam.service.UserSummary("
+        + "u.id, u.username, u.email, u.enabled, u.createdAt, u.lastLogin) FROM User u WHERE u.id > :after ORDER BY u.id")
+@NamedQuery(name = User.ROLES_BY_IDS, query = "SELECT u.id, r FROM User u JOIN u.roles r WHERE u.id IN :ids")
+@NamedQuery(name = User.TAKEN_USERNAMES, query = "SELECT u.username FROM User u WHERE u.username IN :usernames")
+@NamedQuery(name = User.TAKEN_EMAILS, query = "SELECT u.email FROM User u WHERE u.email IN :emails")
 public class User {
+    public static final String FIND_BY_USERNAME = "User.findByUsername";
+    public static final String SUMMARIES_AFTER = "User.summariesAfter";
+    public static final String ROLES_BY_IDS = "User.rolesByIds";
+    public static final String TAKEN_USERNAMES = "User.takenUsernames";
+    public static final String TAKEN_EMAILS = "User.takenEmails";
+
+    // pooled sequence rather than IDENTITY: Hibernate cannot batch inserts whose ids come back from the insert
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
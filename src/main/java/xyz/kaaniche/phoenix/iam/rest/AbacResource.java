@@ -6,12 +6,17 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import org.eclipse.microprofile.config.ConfigProvider;
 import xyz.kaaniche.phoenix.iam.abac.AbacEvaluator;
+import xyz.kaaniche.phoenix.iam.abac.AbacMetrics;
 import xyz.kaaniche.phoenix.iam.abac.AbacPolicy;
+import xyz.kaaniche.phoenix.iam.abac.PolicyReplicator;
 import xyz.kaaniche.phoenix.iam.abac.PolicyStore;
+import xyz.kaaniche.phoenix.iam.rest.dto.AbacBatchRequest;
 
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -22,6 +27,8 @@ import java.util.logging.Logger;
 @Consumes(MediaType.APPLICATION_JSON)
 public class AbacResource {
     private static final Logger LOGGER = Logger.getLogger(AbacResource.class.getName());
+    private static final int maxBatchSize = ConfigProvider.getConfig()
+            .getOptionalValue("abac.batch.max.size", Integer.class).orElse(1000);
     
     @Inject
     private AbacEvaluator evaluator;
@@ -29,6 +36,12 @@ public class AbacResource {
     @Inject
     private PolicyStore policyStore;
     
+    @Inject
+    private PolicyReplicator policyReplicator;
+    
+    @Inject
+    private AbacMetrics metrics;
+    
     /**
      * Evaluate ABAC policy for given context
      */
@@ -36,16 +49,14 @@ public class AbacResource {
     @Path("/evaluate")
     public Response evaluate(Map<String, Object> context, @Context SecurityContext securityContext) {
         try {
-            LOGGER.info("Evaluating ABAC policy for context: " + context);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Evaluating ABAC policy for context: " + context);
+            }
             
             AbacEvaluator.Decision decision = evaluator.evaluate(context);
             
             return Response.ok()
-                    .entity(Map.of(
-                            "permitted", decision.isPermitted(),
-                            "effect", decision.getEffect(),
-                            "reason", decision.getReason() != null ? decision.getReason() : "N/A"
-                    ))
+                    .entity(toJson(decision))
                     .build();
                     
         } catch (Exception e) {
@@ -56,6 +67,68 @@ public class AbacResource {
         }
     }
     
+    /**
+     * Evaluate many contexts in one call
+     * With a subject, every context is overlaid on it (e.g. one user, many resources); decisions keep input order
+     */
+    @POST
+    @Path("/evaluate/batch")
+    public Response evaluateBatch(AbacBatchRequest request, @Context SecurityContext securityContext) {
+        if (request == null || request.getContexts() == null || request.getContexts().contains(null)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "contexts is required"))
+                    .build();
+        }
+        if (request.getContexts().size() > maxBatchSize) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "At most " + maxBatchSize + " contexts per batch"))
+                    .build();
+        }
+        
+        try {
+            Map<String, Object> subject = request.getSubject() != null ? request.getSubject() : Map.of();
+            List<Map<String, Object>> decisions = evaluator.evaluateAll(subject, request.getContexts()).stream()
+                    .map(AbacResource::toJson)
+                    .toList();
+            return Response.ok()
+                    .entity(Map.of("decisions", decisions))
+                    .build();
+                    
+        } catch (Exception e) {
+            LOGGER.severe("ABAC batch evaluation failed: " + e.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
+        }
+    }
+    
+    private static Map<String, Object> toJson(AbacEvaluator.Decision decision) {
+        return Map.of(
+                "permitted", decision.isPermitted(),
+                "effect", decision.getEffect(),
+                "reason", decision.getReason() != null ? decision.getReason() : "N/A",
+                "policyVersion", decision.getPolicyVersion()
+        );
+    }
+    
+    /**
+     * Decision counters, latency histogram, most evaluated policies and sampled decision traces
+     */
+    @GET
+    @Path("/metrics")
+    public Response getMetrics(@QueryParam("top") @DefaultValue("20") int top,
+                               @Context SecurityContext securityContext) {
+        // Only admins can view metrics
+        if (securityContext.getUserPrincipal() == null || 
+            !securityContext.isUserInRole("ADMIN")) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity(Map.of("error", "Admin role required"))
+                    .build();
+        }
+        
+        return Response.ok(metrics.report(Math.max(0, top))).build();
+    }
+    
     /**
      * Get all policies
      */
@@ -89,7 +162,7 @@ public class AbacResource {
         }
         
         try {
-            policyStore.addPolicy(policy);
+            policyReplicator.save(policy);
             LOGGER.info("Policy added: " + policy.getName());
             
             return Response.status(Response.Status.CREATED)
@@ -119,7 +192,7 @@ public class AbacResource {
                     .build();
         }
         
-        policyStore.removePolicy(policyId);
+        policyReplicator.delete(policyId);
         LOGGER.info("Policy deleted: " + policyId);
         
         return Response.ok()
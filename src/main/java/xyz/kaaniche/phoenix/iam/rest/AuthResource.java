@@ -13,6 +13,7 @@ import xyz.kaaniche.phoenix.iam.security.QrCodeService;
 import xyz.kaaniche.phoenix.iam.security.RateLimiter;
 import xyz.kaaniche.phoenix.iam.security.TotpService;
 import xyz.kaaniche.phoenix.iam.service.JwtService;
+import xyz.kaaniche.phoenix.iam.service.LastLoginBuffer;
 import xyz.kaaniche.phoenix.iam.service.UserService;
 import xyz.kaaniche.phoenix.iam.util.RequestUtil;
 
@@ -30,6 +31,9 @@ public class AuthResource {
     @Inject
     private UserService userService;
 
+    @Inject
+    private LastLoginBuffer lastLoginBuffer;
+
     @Inject
     private JwtService jwtService;
 
@@ -100,7 +104,7 @@ public class AuthResource {
                 }
                 
                 // Verify the TOTP code
-                if (!totpService.verifyCode(user.getTotpSecret(), totp)) {
+                if (!totpService.verifyCode("user:" + user.getId(), user.getTotpSecret(), totp)) {
                     LOGGER.warning("User " + username + " provided invalid TOTP code");
                     return Response.status(Response.Status.UNAUTHORIZED)
                             .entity(Map.of(
@@ -110,7 +114,7 @@ public class AuthResource {
                             .build();
                 }
                 
-                userService.updateLastLogin(user.getId());
+                lastLoginBuffer.record(user.getId());
                 
                 LOGGER.info("User authenticated with MFA, generating token for: " + username);
                 
@@ -233,7 +237,7 @@ public class AuthResource {
                     .entity(Map.of("error", "TOTP not enrolled"))
                     .build();
         }
-        if (!totpService.verifyCode(user.getTotpSecret(), code)) {
+        if (!totpService.verifyCode("user:" + user.getId(), user.getTotpSecret(), code)) {
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity(Map.of("error", "Invalid TOTP code"))
                     .build();
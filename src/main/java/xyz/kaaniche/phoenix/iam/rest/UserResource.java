@@ -1,26 +1,143 @@
 package xyz.kaaniche.phoenix.iam.rest;
 
 import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import xyz.kaaniche.phoenix.iam.entity.User;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.service.UserImportService;
 import xyz.kaaniche.phoenix.iam.service.UserService;
+import xyz.kaaniche.phoenix.iam.service.UserSummary;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Path("/users")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class UserResource {
+    private static final Config config = ConfigProvider.getConfig();
+    private static final int defaultPageSize = config.getOptionalValue("users.page.size", Integer.class).orElse(100);
+    private static final int maxPageSize = config.getOptionalValue("users.page.max.size", Integer.class).orElse(1000);
+    private static final int streamChunkSize = config.getOptionalValue("users.stream.chunk.size", Integer.class).orElse(500);
 
     @Inject
     private UserService userService;
 
+    @Inject
+    private UserImportService userImportService;
+
+    /**
+     * Keyset-paginated listing: {@code ?after=<last id seen>&limit=<n>}, the next page is linked with {@code rel="next"}.
+     * {@code ?stream=true} writes every user after {@code after} as one JSON array without buffering the result.
+     */
     @GET
-    public Response getAllUsers() {
-        List<User> users = userService.findAll();
-        return Response.ok(users).build();
+    public Response getAllUsers(@QueryParam("after") @DefaultValue("0") long after,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("stream") boolean stream,
+                                @Context UriInfo uriInfo) {
+        if (stream) {
+            StreamingOutput output = out -> {
+                try (JsonGenerator generator = Json.createGenerator(out)) {
+                    generator.writeStartArray();
+                    userService.streamAll(after, streamChunkSize, user -> write(generator, user));
+                    generator.writeEnd();
+                }
+            };
+            return Response.ok(output).build();
+        }
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Json.createObjectBuilder()
+                            .add("error", "invalid_request")
+                            .add("error_description", "limit must be between 1 and " + maxPageSize)
+                            .build())
+                    .build();
+        }
+        List<UserSummary> page = userService.findPage(after, pageSize);
+        Response.ResponseBuilder response = Response.ok(page);
+        if (page.size() == pageSize) {
+            response.link(uriInfo.getRequestUriBuilder()
+                    .replaceQueryParam("after", page.get(page.size() - 1).id())
+                    .replaceQueryParam("limit", pageSize)
+                    .build(), "next");
+        }
+        return response.build();
+    }
+
+    /**
+     * Bulk import from an NDJSON ({@code {"username","email","password","roles":[...]}} per line)
+     * or CSV (header row naming username, email, password and optionally space-separated roles) body.
+     * The response is NDJSON written while the body is still being read: one {@code error} line per rejected row,
+     * a {@code progress} line per stored batch and a final {@code summary}.
+     */
+    @POST
+    @Path("/import")
+    @Consumes({"application/x-ndjson", "text/csv"})
+    @Produces("application/x-ndjson")
+    public Response importUsers(InputStream body, @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+                                @Context SecurityContext securityContext) {
+        if (securityContext.getUserPrincipal() == null || !securityContext.isUserInRole("ADMIN")) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Json.createObjectBuilder()
+                            .add("error", "access_denied")
+                            .add("error_description", "Admin role required")
+                            .build())
+                    .build();
+        }
+        UserImportService.Format format = contentType != null && contentType.startsWith("text/csv")
+                ? UserImportService.Format.CSV : UserImportService.Format.NDJSON;
+        StreamingOutput output = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            UserImportService.Progress summary = userImportService.importUsers(
+                    new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)), format,
+                    new UserImportService.Listener() {
+                        @Override
+                        public void onRowError(long line, String username, String error) {
+                            JsonObjectBuilder event = Json.createObjectBuilder()
+                                    .add("type", "error")
+                                    .add("line", line)
+                                    .add("error", error);
+                            if (username != null) {
+                                event.add("username", username);
+                            }
+                            writeLine(writer, event.build());
+                        }
+
+                        @Override
+                        public void onProgress(UserImportService.Progress progress) {
+                            writeLine(writer, counters("progress", progress));
+                            try {
+                                writer.flush();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    });
+            writeLine(writer, counters("summary", summary));
+            writer.flush();
+        };
+        return Response.ok(output).build();
     }
 
     @GET
@@ -37,4 +154,43 @@ public class UserResource {
         userService.deleteUser(id);
         return Response.noContent().build();
     }
+
+    private static JsonObject counters(String type, UserImportService.Progress progress) {
+        return Json.createObjectBuilder()
+                .add("type", type)
+                .add("processed", progress.processed())
+                .add("imported", progress.imported())
+                .add("failed", progress.failed())
+                .build();
+    }
+
+    private static void writeLine(Writer writer, JsonObject event) {
+        try {
+            writer.write(event.toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(JsonGenerator generator, UserSummary user) {
+        generator.writeStartObject()
+                .write("id", user.id())
+                .write("username", user.username())
+                .write("email", user.email())
+                .write("enabled", user.enabled());
+        writeDate(generator, "createdAt", user.createdAt());
+        writeDate(generator, "lastLogin", user.lastLogin());
+        generator.writeStartArray("roles");
+        user.roles().forEach(generator::write);
+        generator.writeEnd().writeEnd();
+    }
+
+    private static void writeDate(JsonGenerator generator, String name, LocalDateTime value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value.toString());
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package xyz.kaaniche.phoenix.iam.rest.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class AbacBatchRequest {
+    private Map<String, Object> subject;
+    private List<Map<String, Object>> contexts;
+
+    public AbacBatchRequest() {}
+
+    public Map<String, Object> getSubject() {
+        return subject;
+    }
+
+    public void setSubject(Map<String, Object> subject) {
+        this.subject = subject;
+    }
+
+    public List<Map<String, Object>> getContexts() {
+        return contexts;
+    }
+
+    public void setContexts(List<Map<String, Object>> contexts) {
+        this.contexts = contexts;
+    }
+}
@@ -6,6 +6,11 @@ import jakarta.security.enterprise.identitystore.PasswordHash;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
 
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
 public class Argon2Utility implements PasswordHash {
     private static final Config config = ConfigProvider.getConfig();
     private static final int saltLength = config.getValue("argon2.saltLength",Integer.class);
@@ -15,22 +20,63 @@ public class Argon2Utility implements PasswordHash {
     private static final int iterations = config.getValue("argon2.iterations",Integer.class);
     private static final int memory = config.getValue("argon2.memory",Integer.class);
     private static final int threads = config.getValue("argon2.threads",Integer.class);
+    // bounded hashing capacity: each running hash pins `memory` KiB and `threads` cores, excess callers queue in FIFO order
+    private static final int maxConcurrent = config.getOptionalValue("argon2.max.concurrent",Integer.class)
+            .orElse(Math.max(1,Runtime.getRuntime().availableProcessors()/threads));
+    private static final Semaphore permits = new Semaphore(maxConcurrent,true);
+    // verified against when the identity does not exist, so unknown users cost exactly one Argon2 verification too
+    private static final String dummyHash = hash(randomPassword());
+
     public static String hash(char[] clientHash){
+        permits.acquireUninterruptibly();
         try{
             return argon2.hash(iterations,memory,threads,clientHash);
         }finally {
+            permits.release();
             argon2.wipeArray(clientHash);
         }
     }
 
+    /**
+     * A null {@code serverHash} (unknown identity) runs a verification against a precomputed dummy hash
+     * and returns false, so response time does not reveal whether the identity exists.
+     */
     public static boolean check(String serverHash,char[] clientHash){
+       permits.acquireUninterruptibly();
        try {
-           return argon2.verify(serverHash,clientHash);
+           boolean verified = argon2.verify(serverHash == null ? dummyHash : serverHash,clientHash);
+           return serverHash != null && verified;
        }finally {
+           permits.release();
            argon2.wipeArray(clientHash);
        }
     }
 
+    /**
+     * Run Argon2 work done with other parameters (e.g. PasswordService) under the same concurrency bound
+     */
+    public static <T> T withPermit(Supplier<T> work){
+        permits.acquireUninterruptibly();
+        try {
+            return work.get();
+        }finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Number of Argon2 computations allowed to run at once (argon2.max.concurrent)
+     */
+    public static int maxConcurrent(){
+        return maxConcurrent;
+    }
+
+    private static char[] randomPassword(){
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return Base64.getEncoder().encodeToString(random).toCharArray();
+    }
+
     @Override
     public String generate(char[] password) {
         return hash(password);
@@ -1,121 +1,183 @@
 package xyz.kaaniche.phoenix.iam.security;
 
-import javax.crypto.KeyGenerator;
-import javax.crypto.SecretKey;
+import org.eclipse.microprofile.config.ConfigProvider;
+
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import java.nio.ByteBuffer;
-import java.security.SecureRandom;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
 import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.Base64;
-import java.util.UUID;
 
+/**
+ * Authorization code sealed as a single ChaCha20-Poly1305 blob.
+ * Wire format: base64url(version | keyId | nonce | AEAD(expiration, roles, tenant, username, scopes, redirectUri, codeChallenge)),
+ * where every string is a u16 length-prefixed UTF-8 field (0xFFFF marks null) and roles is the identity's
+ * role bitmask captured at login (-1 when unknown), so the token exchange does not have to re-query it.
+ * Keys come from {@link AuthorizationCodeKeys}, so any node sharing the key ring can redeem a code.
+ */
 public record AuthorizationCode(String tenantName, String identityUsername,
                                 String approvedScopes, Long expirationDate,
-                                String redirectUri){
-    private static final SecretKey key;
-
-    private static final String codePrefix = "urn:phoenix:code:";
-
-    static {
+                                String redirectUri, Long roles){
+    private static final AuthorizationCodeKeys keys = AuthorizationCodeKeys.load(ConfigProvider.getConfig());
+
+    private static final byte VERSION = 3;
+    private static final String ENCRYPT_ALGO = "ChaCha20-Poly1305";
+    private static final int NONCE_LEN = 12; // 96 bits, 12 bytes
+    private static final int TAG_LEN = 16;
+    private static final int HEADER_LEN = 2 + NONCE_LEN;
+    // base64url chars covering version, key id, nonce and one ciphertext byte (15 bytes, no padding)
+    private static final int CODE_ID_LEN = 20;
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+    // separate instances: the JCE refuses to re-init a ChaCha20 cipher with the key/nonce it just encrypted with
+    private static final ThreadLocal<Cipher> encryptCipher = ThreadLocal.withInitial(AuthorizationCode::newCipher);
+    private static final ThreadLocal<Cipher> decryptCipher = ThreadLocal.withInitial(AuthorizationCode::newCipher);
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
         try {
-            key = KeyGenerator.getInstance("CHACHA20").generateKey();
+            return MessageDigest.getInstance("SHA-256");
         } catch (GeneralSecurityException e) {
-            throw new RuntimeException(e);
+            throw new IllegalStateException(e);
         }
+    });
+
+    public String getCode(String codeChallenge) throws GeneralSecurityException {
+        byte[] tenant = utf8(tenantName);
+        byte[] username = utf8(identityUsername);
+        byte[] scopes = utf8(approvedScopes);
+        byte[] redirect = utf8(redirectUri);
+        byte[] challenge = utf8(codeChallenge);
+        int plainLength = 2 * Long.BYTES + field(tenant) + field(username) + field(scopes) + field(redirect) + field(challenge);
+
+        // plaintext and sealed output share one buffer: header | plaintext, encrypted in place after the header
+        byte[] out = new byte[HEADER_LEN + plainLength + TAG_LEN];
+        out[0] = VERSION;
+        out[1] = (byte) keys.activeId();
+        byte[] nonce = new byte[NONCE_LEN];
+        secureRandom.nextBytes(nonce);
+        System.arraycopy(nonce, 0, out, 2, NONCE_LEN);
+        ByteBuffer plain = ByteBuffer.wrap(out, HEADER_LEN, plainLength);
+        plain.putLong(expirationDate == null ? 0L : expirationDate);
+        plain.putLong(roles == null ? -1L : roles);
+        put(plain, tenant);
+        put(plain, username);
+        put(plain, scopes);
+        put(plain, redirect);
+        put(plain, challenge);
+
+        Cipher c = encryptCipher.get();
+        c.init(Cipher.ENCRYPT_MODE, keys.active(), new IvParameterSpec(nonce));
+        c.updateAAD(out, 0, 2);
+        c.doFinal(out, HEADER_LEN, plainLength, out, HEADER_LEN);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out);
     }
 
-    public String getCode(String codeChallenge) throws Exception {
-        String code = UUID.randomUUID().toString();
-        String payload = Base64.getEncoder().withoutPadding().encodeToString((tenantName+":"+identityUsername
-                +":"+approvedScopes+":"+expirationDate+":"+redirectUri).getBytes(StandardCharsets.UTF_8));
-        String associatedData =  codePrefix+code;
-        code = codePrefix+code+":"+payload;
-        return code+":"+Base64.getEncoder().withoutPadding().encodeToString(ChaCha20Poly1305.encrypt(codeChallenge.getBytes(),key));
-    }
-
-    public static AuthorizationCode decode(String authorizationCode,String codeVerifier) throws Exception {
-        int pos = authorizationCode.lastIndexOf(':');
-        String code = authorizationCode.substring(0,pos);
-        String cipherCodeChallenge = authorizationCode.substring(pos+1);
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        digest.update(codeVerifier.getBytes(StandardCharsets.UTF_8));
+    public static AuthorizationCode decode(String authorizationCode,String codeVerifier) throws GeneralSecurityException {
+        byte[] sealed;
+        try {
+            sealed = Base64.getUrlDecoder().decode(authorizationCode);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Malformed authorization code", e);
+        }
+        if (sealed.length < HEADER_LEN + 2 * Long.BYTES + TAG_LEN || sealed[0] != VERSION) {
+            throw new GeneralSecurityException("Unsupported authorization code");
+        }
+        SecretKey key = keys.byId(sealed[1]);
+        if (key == null) {
+            throw new GeneralSecurityException("Unknown authorization code key");
+        }
+        Cipher c = decryptCipher.get();
+        IvParameterSpec iv = new IvParameterSpec(sealed, 2, NONCE_LEN);
+        try {
+            c.init(Cipher.DECRYPT_MODE, key, iv);
+        } catch (InvalidKeyException e) {
+            // same code decoded twice in a row on this thread: the cached cipher rejects the repeated nonce
+            c = newCipher();
+            c.init(Cipher.DECRYPT_MODE, key, iv);
+            decryptCipher.set(c);
+        }
+        c.updateAAD(sealed, 0, 2);
+        int plainLength = c.doFinal(sealed, HEADER_LEN, sealed.length - HEADER_LEN, sealed, HEADER_LEN);
+
+        ByteBuffer plain = ByteBuffer.wrap(sealed, HEADER_LEN, plainLength);
+        long expirationDate = plain.getLong();
+        long roles = plain.getLong();
+        String tenantName = get(plain);
+        String identityUsername = get(plain);
+        String approvedScopes = get(plain);
+        String redirectUri = get(plain);
+        int challengeLength = plain.getShort() & 0xFFFF;
+        if (challengeLength == NULL_LENGTH || codeVerifier == null) {
+            return null;
+        }
         // Use base64url encoding (RFC 7636 standard) - no padding, with - and _
-        String expected = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
-        String decrypted = new String(ChaCha20Poly1305.decrypt(Base64.getDecoder().decode(cipherCodeChallenge),key),StandardCharsets.UTF_8);
-        if(!expected.equals(decrypted)){
-            System.out.println("PKCE Mismatch: expected="+expected+" actual="+decrypted);
+        byte[] expected = Base64.getUrlEncoder().withoutPadding()
+                .encode(sha256.get().digest(codeVerifier.getBytes(StandardCharsets.US_ASCII)));
+        if (!constantTimeEquals(expected, sealed, plain.position(), challengeLength)) {
             return null;
         }
-        code = code.substring(codePrefix.length());
-        pos = code.lastIndexOf(':');
-        code = new String(Base64.getDecoder().decode(code.substring(pos+1)),StandardCharsets.UTF_8);
-        String[] attributes = code.split(":");
-        return new AuthorizationCode(attributes[0],attributes[1],attributes[2],
-                Long.parseLong(attributes[3]),attributes[4]+":"+attributes[5]);
+        return new AuthorizationCode(tenantName, identityUsername, approvedScopes, expirationDate, redirectUri,
+                roles < 0 ? null : roles);
     }
-    private static class ChaCha20Poly1305 {
 
-        private static final String ENCRYPT_ALGO = "ChaCha20-Poly1305";
-        private static final int NONCE_LEN = 12; // 96 bits, 12 bytes
+    /**
+     * Identifier for single-use bookkeeping: derived from the random nonce, so it is unique per issued code.
+     */
+    public static String codeId(String authorizationCode) {
+        return authorizationCode.length() < CODE_ID_LEN ? authorizationCode : authorizationCode.substring(0, CODE_ID_LEN);
+    }
 
-        // if no nonce, generate a random 12 bytes nonce
-        public static byte[] encrypt(byte[] pText, SecretKey key) throws Exception {
-            return encrypt(pText, key, getNonce());
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(ENCRYPT_ALGO);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
-        public static byte[] encrypt(byte[] pText, SecretKey key, byte[] nonce) throws Exception {
-
-            Cipher cipher = Cipher.getInstance(ENCRYPT_ALGO);
-
-            // IV, initialization value with nonce
-            IvParameterSpec iv = new IvParameterSpec(nonce);
-
-            cipher.init(Cipher.ENCRYPT_MODE, key, iv);
-
-            byte[] encryptedText = cipher.doFinal(pText);
-
-            // append nonce to the encrypted text
-            byte[] output = ByteBuffer.allocate(encryptedText.length + NONCE_LEN)
-                    .put(encryptedText)
-                    .put(nonce)
-                    .array();
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
 
-            return output;
+    private static int field(byte[] value) {
+        if (value != null && value.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Authorization code field too long");
         }
+        return Short.BYTES + (value == null ? 0 : value.length);
+    }
 
-        public static byte[] decrypt(byte[] cText, SecretKey key) throws Exception {
-
-            ByteBuffer bb = ByteBuffer.wrap(cText);
-
-            // split cText to get the appended nonce
-            byte[] encryptedText = new byte[cText.length - NONCE_LEN];
-            byte[] nonce = new byte[NONCE_LEN];
-            bb.get(encryptedText);
-            bb.get(nonce);
-
-            Cipher cipher = Cipher.getInstance(ENCRYPT_ALGO);
-
-            IvParameterSpec iv = new IvParameterSpec(nonce);
-
-            cipher.init(Cipher.DECRYPT_MODE, key, iv);
-
-            // decrypted text
-            byte[] output = cipher.doFinal(encryptedText);
-
-            return output;
-
+    private static void put(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
         }
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
 
-        // 96-bit nonce (12 bytes)
-        private static byte[] getNonce() {
-            byte[] newNonce = new byte[12];
-            new SecureRandom().nextBytes(newNonce);
-            return newNonce;
+    private static String get(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
         }
-
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
     }
 
+    private static boolean constantTimeEquals(byte[] expected, byte[] source, int offset, int length) {
+        if (expected.length != length) {
+            return false;
+        }
+        int result = 0;
+        for (int i = 0; i < length; i++) {
+            result |= expected[i] ^ source[offset + i];
+        }
+        return result == 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.eclipse.microprofile.config.Config;
+import org.wildfly.security.auth.server.IdentityCredentials;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.credential.SecretKeyCredential;
+import org.wildfly.security.credential.store.CredentialStore;
+import org.wildfly.security.credential.store.WildFlyElytronCredentialStoreProvider;
+import org.wildfly.security.password.interfaces.ClearPassword;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Key ring for sealing authorization codes.
+ * <p>
+ * {@code auth.code.key.source} selects where keys come from:
+ * <ul>
+ *     <li>{@code memory} (default): one random key per JVM, codes only redeem on the issuing node</li>
+ *     <li>{@code config}: {@code auth.code.keys=1:base64Key,2:base64Key} (32-byte ChaCha20 keys)</li>
+ *     <li>{@code elytron}: {@code auth.code.keys=1:alias,2:alias} resolved as secret-key credentials
+ *     from the credential store configured by {@code jwt.elytron.store.*}</li>
+ * </ul>
+ * New codes are sealed with {@code auth.code.key.active}; every listed key stays valid for decoding,
+ * so keys are rotated by adding the new id, switching the active id on every node, then dropping the old one.
+ */
+final class AuthorizationCodeKeys {
+    private static final Logger LOGGER = Logger.getLogger(AuthorizationCodeKeys.class.getName());
+    private static final int KEY_LENGTH = 32;
+
+    private final SecretKey[] keys = new SecretKey[256];
+    private final int activeId;
+
+    private AuthorizationCodeKeys(Map<Integer, SecretKey> keys, int activeId) {
+        keys.forEach((id, key) -> this.keys[id] = key);
+        if (this.keys[activeId] == null) {
+            throw new IllegalStateException("Active authorization code key " + activeId + " is not configured");
+        }
+        this.activeId = activeId;
+    }
+
+    static AuthorizationCodeKeys load(Config config) {
+        String source = config.getOptionalValue("auth.code.key.source", String.class).orElse("memory");
+        if ("memory".equalsIgnoreCase(source)) {
+            try {
+                return new AuthorizationCodeKeys(Map.of(0, KeyGenerator.getInstance("CHACHA20").generateKey()), 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        Map<Integer, String> entries = parseEntries(config.getOptionalValue("auth.code.keys", String.class).orElse(""));
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("auth.code.keys is required when auth.code.key.source=" + source);
+        }
+        int activeId = config.getOptionalValue("auth.code.key.active", Integer.class)
+                .orElseGet(() -> entries.keySet().stream().max(Integer::compare).orElseThrow());
+        Map<Integer, SecretKey> keys = new HashMap<>();
+        if ("config".equalsIgnoreCase(source)) {
+            entries.forEach((id, value) -> keys.put(id, toKey(Base64.getMimeDecoder().decode(value))));
+        } else if ("elytron".equalsIgnoreCase(source)) {
+            CredentialStore store = openCredentialStore(config);
+            entries.forEach((id, alias) -> keys.put(id, retrieve(store, alias)));
+        } else {
+            throw new IllegalStateException("Unsupported auth.code.key.source: " + source);
+        }
+        LOGGER.info("Loaded " + keys.size() + " authorization code keys from " + source + ", active key " + activeId);
+        return new AuthorizationCodeKeys(keys, activeId);
+    }
+
+    int activeId() {
+        return activeId;
+    }
+
+    SecretKey active() {
+        return keys[activeId];
+    }
+
+    /**
+     * @return the key registered under {@code id}, or null if it is unknown (or already retired)
+     */
+    SecretKey byId(int id) {
+        return keys[id & 0xFF];
+    }
+
+    private static Map<Integer, String> parseEntries(String value) {
+        Map<Integer, String> entries = new HashMap<>();
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException("auth.code.keys entries must be <id>:<value>");
+            }
+            int id = Integer.parseInt(trimmed.substring(0, separator));
+            if (id < 0 || id > 255) {
+                throw new IllegalStateException("auth.code.keys ids must be in [0, 255]");
+            }
+            entries.put(id, trimmed.substring(separator + 1));
+        }
+        return entries;
+    }
+
+    private static SecretKey toKey(byte[] material) {
+        if (material.length != KEY_LENGTH) {
+            throw new IllegalStateException("Authorization code keys must be " + KEY_LENGTH + " bytes");
+        }
+        return new SecretKeySpec(material, "ChaCha20");
+    }
+
+    private static CredentialStore openCredentialStore(Config config) {
+        String path = config.getValue("jwt.elytron.store.path", String.class);
+        String password = config.getValue("jwt.elytron.store.password", String.class);
+        String type = config.getOptionalValue("jwt.elytron.store.type", String.class).orElse("JCEKS");
+        try {
+            CredentialStore store = CredentialStore.getInstance("KeyStoreCredentialStore",
+                    WildFlyElytronCredentialStoreProvider.getInstance());
+            store.initialize(Map.of("location", path, "keyStoreType", type, "modifiable", "false"),
+                    new CredentialStore.CredentialSourceProtectionParameter(IdentityCredentials.NONE.withCredential(
+                            new PasswordCredential(ClearPassword.createRaw(ClearPassword.ALGORITHM_CLEAR, password.toCharArray())))));
+            return store;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to open credential store " + path, e);
+        }
+    }
+
+    private static SecretKey retrieve(CredentialStore store, String alias) {
+        try {
+            SecretKeyCredential credential = store.retrieve(alias, SecretKeyCredential.class);
+            if (credential == null) {
+                throw new IllegalStateException("No secret key credential under alias " + alias);
+            }
+            return toKey(credential.getSecretKey().getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to read credential " + alias, e);
+        }
+    }
+}
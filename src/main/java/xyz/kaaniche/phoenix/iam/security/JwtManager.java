@@ -7,6 +7,7 @@ import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.KeyUse;
 import com.nimbusds.jose.jwk.OctetKeyPair;
 import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jose.util.Base64URL;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.JWTParser;
@@ -24,6 +25,7 @@ import org.wildfly.security.password.PasswordFactory;
 import org.wildfly.security.password.interfaces.ClearPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -31,6 +33,7 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Startup
 @Singleton
@@ -47,6 +50,8 @@ public class  JwtManager {
     private final String claimRoles = config.getValue("jwt.claim.roles",String.class);
     private final OctetKeyPairGenerator keyPairGenerator = new OctetKeyPairGenerator(Curve.Ed25519);
     private final String keySource = config.getOptionalValue("jwt.key.source", String.class).orElse("memory");
+    private final Long refreshTokenLifetimeDuration = config.getOptionalValue("jwt.refresh.lifetime.duration", Long.class).orElse(10800L);
+    private final int batchMaxSize = config.getOptionalValue("jwt.batch.max.size", Integer.class).orElse(500);
     private OctetKeyPair externalKeyPair;
 
     @PostConstruct
@@ -91,7 +96,57 @@ public class  JwtManager {
             throw new EJBException(e);
         }
     }
-    public String generateRefreshToken(String clientId, String subject, String approvedScope) throws Exception {
+    /**
+     * Sign a batch of access tokens with the current key pair.
+     * The key, signer, encoded header and shared claims are resolved once; tokens are signed lazily
+     * as the returned stream is consumed, so callers can write each token out as soon as it is ready.
+     */
+    public Stream<String> generateAccessTokens(List<AccessTokenRequest> requests){
+        if (requests.size() > batchMaxSize) {
+            throw new IllegalArgumentException("Batch size exceeds " + batchMaxSize);
+        }
+        OctetKeyPair octetKeyPair = getKeyPair()
+                .orElseThrow(()->new EJBException("Unable to retrieve a valid Ed25519 KeyPair"));
+        try {
+            JWSSigner signer = new Ed25519Signer(octetKeyPair);
+            JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.EdDSA)
+                    .keyID(octetKeyPair.getKeyID())
+                    .type(JOSEObjectType.JWT)
+                    .build();
+            String headerPrefix = header.toBase64URL() + ".";
+            Instant now = Instant.now();
+            JWTClaimsSet shared = new JWTClaimsSet.Builder()
+                    .issuer(issuer)
+                    .audience(audiences)
+                    .issueTime(Date.from(now))
+                    .notBeforeTime(Date.from(now))
+                    .expirationTime(Date.from(now.plus(jwtLifetimeDuration, ChronoUnit.SECONDS)))
+                    .build();
+            return requests.stream().map(request -> {
+                JWTClaimsSet claimsSet = new JWTClaimsSet.Builder(shared)
+                        .subject(request.subject())
+                        .claim("upn",request.subject())
+                        .claim("tenant_id",request.tenantId())
+                        .claim("scope", request.approvedScopes())
+                        .claim(claimRoles, request.roles())
+                        .jwtID(UUID.randomUUID().toString())
+                        .build();
+                String signingInput = headerPrefix + Base64URL.encode(claimsSet.toString());
+                try {
+                    return signingInput + "." + signer.sign(header, signingInput.getBytes(StandardCharsets.US_ASCII));
+                } catch (JOSEException e) {
+                    throw new EJBException(e);
+                }
+            });
+        } catch (JOSEException e) {
+            throw new EJBException(e);
+        }
+    }
+
+    /**
+     * Refresh tokens carry a jti and the id of their rotation family (see RefreshTokenFamilyStore).
+     */
+    public String generateRefreshToken(String clientId, String subject, String approvedScope, String familyId, String jti) throws Exception {
         OctetKeyPair octetKeyPair = getKeyPair()
                 .orElseThrow(()->new EJBException("Unable to retrieve a valid Ed25519 KeyPair"));
         JWSSigner signer = new Ed25519Signer(octetKeyPair);
@@ -105,8 +160,10 @@ public class  JwtManager {
                 .subject(subject)
                 .claim("tenant_id", clientId)
                 .claim("scope", approvedScope)
-                //refresh token for 3 hours.
-                .expirationTime(Date.from(now.plus(3, ChronoUnit.HOURS)))
+                .claim("fid", familyId)
+                .jwtID(jti)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(refreshTokenLifetimeDuration, ChronoUnit.SECONDS)))
                 .build();
         SignedJWT signedRefreshToken = new SignedJWT(header,refreshTokenClaims);
         signedRefreshToken.sign(signer);
@@ -190,10 +247,21 @@ public class  JwtManager {
         return cachedKeyPairs.stream().filter(this::hasNotExpired).findAny();
     }
 
+    public record AccessTokenRequest(String tenantId, String subject, String approvedScopes, String[] roles) {
+    }
+
     public String getClaimRoles() {
         return claimRoles;
     }
 
+    public long getRefreshTokenLifetimeDuration() {
+        return refreshTokenLifetimeDuration;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
     private boolean isExternalKeySource() {
         return "elytron".equalsIgnoreCase(keySource) || "config".equalsIgnoreCase(keySource) || "vault".equalsIgnoreCase(keySource);
     }
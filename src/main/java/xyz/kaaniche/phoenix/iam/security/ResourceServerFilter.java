@@ -212,7 +212,7 @@ public class ResourceServerFilter implements ContainerRequestFilter {
         
         return path.startsWith("authorize") ||
                path.startsWith("login") ||
-               path.startsWith("oauth/token") ||
+               (path.startsWith("oauth/token") && !path.startsWith("oauth/token/batch")) ||
                path.startsWith("auth/register") ||
                path.startsWith("auth/login") ||
                path.startsWith("api/auth/register") ||
@@ -3,8 +3,10 @@ package xyz.kaaniche.phoenix.iam.security;
 import org.apache.commons.codec.binary.Base32;
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.store.TotpStepStore;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
@@ -19,6 +21,9 @@ public class TotpService {
     private final SecureRandom secureRandom = new SecureRandom();
     private final Config config = ConfigProvider.getConfig();
 
+    @Inject
+    private TotpStepStore totpStepStore;
+
     public String generateSecret() {
         byte[] secret = new byte[20];
         secureRandom.nextBytes(secret);
@@ -35,13 +40,27 @@ public class TotpService {
                 + "&digits=" + digits + "&period=" + period;
     }
 
-    public boolean verifyCode(String secret, String code) {
-        if (secret == null || code == null) {
+    /**
+     * Verify a code and reject it if the same (or an earlier) time step was already
+     * accepted for {@code identityKey}. The used-step store is only hit once a code matched.
+     */
+    public boolean verifyCode(String identityKey, String secret, String code) {
+        long step = matchStep(secret, code);
+        if (step < 0) {
             return false;
         }
+        int period = config.getOptionalValue("totp.period.seconds", Integer.class).orElse(30);
+        int window = config.getOptionalValue("totp.window", Integer.class).orElse(1);
+        return totpStepStore.advance(identityKey, step, (2 * window + 1) * period);
+    }
+
+    private long matchStep(String secret, String code) {
+        if (secret == null || code == null) {
+            return -1;
+        }
         String trimmed = code.trim();
         if (!trimmed.matches("\\d{6,8}")) {
-            return false;
+            return -1;
         }
         int digits = config.getOptionalValue("totp.digits", Integer.class).orElse(6);
         int period = config.getOptionalValue("totp.period.seconds", Integer.class).orElse(30);
@@ -49,12 +68,13 @@ public class TotpService {
 
         long now = Instant.now().getEpochSecond();
         for (int i = -window; i <= window; i++) {
-            String candidate = generateTotp(secret, (now / period) + i, digits);
+            long step = (now / period) + i;
+            String candidate = generateTotp(secret, step, digits);
             if (constantTimeEquals(candidate, trimmed)) {
-                return true;
+                return step;
             }
         }
-        return false;
+        return -1;
     }
 
     private String generateTotp(String secret, long counter, int digits) {
@@ -0,0 +1,82 @@
+package xyz.kaaniche.phoenix.iam.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind buffer for last-login timestamps.
+ * Logins only record the timestamp in memory (one entry per user, the latest wins); every
+ * {@code users.last.login.flush.interval.seconds} the buffer is written with one batched UPDATE.
+ * At most {@code users.last.login.buffer.size} users are buffered: a login that would exceed it flushes inline.
+ * The buffer is flushed on shutdown, so only a crash loses the last interval.
+ */
+@ApplicationScoped
+public class LastLoginBuffer {
+    private static final Logger LOGGER = Logger.getLogger(LastLoginBuffer.class.getName());
+
+    @Inject
+    private UserService userService;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private int capacity;
+    private ScheduledFuture<?> flushTask;
+
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        capacity = config.getOptionalValue("users.last.login.buffer.size", Integer.class).orElse(10000);
+        long interval = config.getOptionalValue("users.last.login.flush.interval.seconds", Long.class).orElse(5L);
+        flushTask = scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void record(Long userId) {
+        pending.merge(userId, LocalDateTime.now(), (previous, current) -> current.isAfter(previous) ? current : previous);
+        if (pending.size() > capacity) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDateTime> batch = new HashMap<>(pending);
+        userService.updateLastLogins(batch);
+        // keep entries recorded again while the batch was written
+        batch.forEach(pending::remove);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to flush " + pending.size() + " last-login updates", e);
+        }
+    }
+}
@@ -2,17 +2,37 @@ package xyz.kaaniche.phoenix.iam.service;
 
 import de.mkammerer.argon2.Argon2;
 import de.mkammerer.argon2.Argon2Factory;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import xyz.kaaniche.phoenix.iam.security.Argon2Utility;
 
+import java.util.UUID;
+
+/**
+ * Password hashing for the user API. Hashes and verifications share the {@code argon2.max.concurrent} permits
+ * of {@link Argon2Utility}, so logins through either path are bounded together.
+ */
 @ApplicationScoped
 public class PasswordService {
     private final Argon2 argon2 = Argon2Factory.create();
+    // same parameters as real hashes, verified against for unknown users
+    private String dummyHash;
+
+    @PostConstruct
+    public void init() {
+        dummyHash = hashPassword(UUID.randomUUID().toString());
+    }
 
     public String hashPassword(String password) {
-        return argon2.hash(10, 65536, 1, password.toCharArray());
+        return Argon2Utility.withPermit(() -> argon2.hash(10, 65536, 1, password.toCharArray()));
     }
 
+    /**
+     * A null {@code hash} (unknown user) is verified against a dummy hash and never matches,
+     * so a miss costs as much as a wrong password.
+     */
     public boolean verifyPassword(String hash, String password) {
-        return argon2.verify(hash, password.toCharArray());
+        boolean verified = Argon2Utility.withPermit(() -> argon2.verify(hash == null ? dummyHash : hash, password.toCharArray()));
+        return hash != null && verified;
     }
 }
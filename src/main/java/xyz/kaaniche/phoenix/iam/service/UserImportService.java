@@ -0,0 +1,353 @@
+package xyz.kaaniche.phoenix.iam.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParsingException;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import xyz.kaaniche.phoenix.iam.entity.User;
+import xyz.kaaniche.phoenix.iam.security.Argon2Utility;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bulk user import from a streamed NDJSON or CSV body.
+ * <p>
+ * Rows are read one at a time. Each password is hashed on the managed executor, with at most
+ * {@code users.import.hash.parallelism} hashes in flight across all imports, and results are collected in input order.
+ * Hashing shares the Argon2 permits with logins, so the import bound is kept below argon2.max.concurrent.
+ * Every {@code users.import.batch.size} rows are checked against existing usernames/emails and inserted
+ * through {@link UserService#createUsers} in their own transaction.
+ * Memory is bounded by the batch size, never by the size of the input.
+ */
+@ApplicationScoped
+public class UserImportService {
+    private static final Logger LOGGER = Logger.getLogger(UserImportService.class.getName());
+    private static final String[] DEFAULT_ROLES = {"USER"};
+
+    @Inject
+    private UserService userService;
+
+    @Inject
+    private PasswordService passwordService;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    private int parallelism;
+    private int batchSize;
+    private Semaphore hashPermits;
+
+    public UserImportService() {
+    }
+
+    UserImportService(UserService userService, PasswordService passwordService, ManagedExecutorService executor,
+                      int parallelism, int batchSize) {
+        this.userService = userService;
+        this.passwordService = passwordService;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.hashPermits = new Semaphore(parallelism);
+    }
+
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        int loginPermits = Argon2Utility.maxConcurrent();
+        parallelism = importParallelism(config.getOptionalValue("users.import.hash.parallelism", Integer.class)
+                .orElse(loginPermits / 2), loginPermits);
+        hashPermits = new Semaphore(parallelism);
+        batchSize = config.getOptionalValue("users.import.batch.size", Integer.class).orElse(500);
+    }
+
+    /**
+     * At least one hash, and at least one Argon2 permit left over for logins whenever there is more than one
+     */
+    static int importParallelism(int configured, int loginPermits) {
+        return Math.max(1, Math.min(configured, loginPermits - 1));
+    }
+
+    public Progress importUsers(BufferedReader reader, Format format, Listener listener) throws IOException {
+        Progress progress = new Progress();
+        Deque<Future<Row>> inFlight = new ArrayDeque<>();
+        List<Row> batch = new ArrayList<>(batchSize);
+        String[] header = format == Format.CSV ? csvHeader(reader) : null;
+        long lineNumber = header == null ? 0 : 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            Row row = format == Format.CSV ? parseCsv(lineNumber, header, line) : parseJson(lineNumber, line);
+            inFlight.addLast(row.error == null ? executor.submit(() -> hash(row)) : CompletableFuture.completedFuture(row));
+            if (inFlight.size() >= parallelism) {
+                collect(inFlight.removeFirst(), batch);
+            }
+            if (batch.size() >= batchSize) {
+                store(batch, progress, listener);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            collect(inFlight.removeFirst(), batch);
+            if (batch.size() >= batchSize) {
+                store(batch, progress, listener);
+            }
+        }
+        store(batch, progress, listener);
+        return progress;
+    }
+
+    private Row hash(Row row) {
+        hashPermits.acquireUninterruptibly();
+        try {
+            row.user = UserService.newUser(row.username, row.email, passwordService.hashPassword(row.password), row.roles);
+        } catch (RuntimeException e) {
+            row.error = "hashing failed: " + e.getMessage();
+        } finally {
+            hashPermits.release();
+        }
+        row.password = null;
+        return row;
+    }
+
+    private void collect(Future<Row> future, List<Row> batch) {
+        try {
+            batch.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Import hashing task failed", e.getCause()); // hash() reports its own failures
+        }
+    }
+
+    private void store(List<Row> batch, Progress progress, Listener listener) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Row> valid = batch.stream().filter(row -> row.error == null).toList();
+        Set<String> takenUsernames = valid.isEmpty() ? Set.of()
+                : userService.findTakenUsernames(valid.stream().map(row -> row.username).toList());
+        Set<String> takenEmails = valid.isEmpty() ? Set.of()
+                : userService.findTakenEmails(valid.stream().map(row -> row.email).toList());
+        Set<String> batchUsernames = new HashSet<>();
+        Set<String> batchEmails = new HashSet<>();
+        List<Row> accepted = new ArrayList<>(valid.size());
+        for (Row row : batch) {
+            if (row.error == null) {
+                if (takenUsernames.contains(row.username) || !batchUsernames.add(row.username)) {
+                    row.error = "username already exists";
+                } else if (takenEmails.contains(row.email) || !batchEmails.add(row.email)) {
+                    row.error = "email already exists";
+                } else {
+                    accepted.add(row);
+                }
+            }
+            if (row.error != null) {
+                progress.failed++;
+                listener.onRowError(row.line, row.username, row.error);
+            }
+        }
+        if (!accepted.isEmpty()) {
+            try {
+                userService.createUsers(accepted.stream().map(row -> row.user).toList());
+                progress.imported += accepted.size();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "User import batch rejected", e);
+                progress.failed += accepted.size();
+                accepted.forEach(row -> listener.onRowError(row.line, row.username, "batch rejected: " + rootMessage(e)));
+            }
+        }
+        progress.processed += batch.size();
+        batch.clear();
+        listener.onProgress(progress);
+    }
+
+    private static String[] csvHeader(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        List<String> names = line == null ? null : splitCsv(line);
+        String[] header = names == null ? new String[0] : names.toArray(new String[0]);
+        for (int i = 0; i < header.length; i++) {
+            header[i] = header[i].trim().toLowerCase();
+        }
+        return header;
+    }
+
+    private static Row parseCsv(long lineNumber, String[] header, String line) {
+        Row row = new Row(lineNumber);
+        List<String> values = splitCsv(line);
+        if (values == null) {
+            row.error = "unterminated quoted field";
+            return row;
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.size(); i++) {
+            fields.put(header[i], values.get(i));
+        }
+        String roles = fields.get("roles");
+        return validate(row, fields.get("username"), fields.get("email"), fields.get("password"),
+                roles == null || roles.isBlank() ? DEFAULT_ROLES : roles.trim().split("\\s+"));
+    }
+
+    private static Row parseJson(long lineNumber, String line) {
+        Row row = new Row(lineNumber);
+        JsonObject object;
+        try {
+            object = Json.createReader(new StringReader(line)).readObject();
+        } catch (JsonParsingException | ClassCastException e) {
+            row.error = "malformed JSON object";
+            return row;
+        }
+        String[] roles = jsonRoles(object.get("roles"));
+        validate(row, object.getString("username", null), object.getString("email", null),
+                object.getString("password", null), roles == null ? DEFAULT_ROLES : roles);
+        if (roles == null && row.error == null) {
+            row.error = "roles must be an array of strings";
+        }
+        return row;
+    }
+
+    /**
+     * The roles of a JSON row, the defaults if absent or empty; null if the value is not an array of strings
+     */
+    private static String[] jsonRoles(JsonValue value) {
+        if (value == null || value == JsonValue.NULL) {
+            return DEFAULT_ROLES;
+        }
+        if (!(value instanceof JsonArray roles)) {
+            return null;
+        }
+        if (roles.isEmpty()) {
+            return DEFAULT_ROLES;
+        }
+        try {
+            return roles.getValuesAs(JsonString::getString).toArray(new String[0]);
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    private static Row validate(Row row, String username, String email, String password, String[] roles) {
+        row.username = username;
+        row.email = email;
+        row.password = password;
+        row.roles = roles;
+        if (username == null || username.isBlank() || email == null || email.isBlank() || password == null || password.isEmpty()) {
+            row.error = "username, email and password are required";
+        }
+        return row;
+    }
+
+    /**
+     * Split one CSV record (RFC 4180 quoting, no embedded line breaks); null if a quote is left open
+     */
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * Callbacks invoked on the importing thread, in input order
+     */
+    public interface Listener {
+        void onRowError(long line, String username, String error);
+
+        void onProgress(Progress progress);
+    }
+
+    public static final class Progress {
+        private long processed;
+        private long imported;
+        private long failed;
+
+        public long processed() {
+            return processed;
+        }
+
+        public long imported() {
+            return imported;
+        }
+
+        public long failed() {
+            return failed;
+        }
+    }
+
+    private static final class Row {
+        private final long line;
+        private String username;
+        private String email;
+        private String password;
+        private String[] roles;
+        private String error;
+        private User user;
+
+        private Row(long line) {
+            this.line = line;
+        }
+    }
+}
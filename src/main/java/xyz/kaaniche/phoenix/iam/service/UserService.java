@@ -1,49 +1,187 @@
 package xyz.kaaniche.phoenix.iam.service;
 
+import jakarta.annotation.Resource;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.ConfigProvider;
 import xyz.kaaniche.phoenix.iam.entity.User;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class UserService {
-    
+    // matches hibernate.jdbc.batch_size, so every flush sends full JDBC batches
+    private static final int flushInterval = ConfigProvider.getConfig()
+            .getOptionalValue("users.import.flush.interval", Integer.class).orElse(50);
+
     @PersistenceContext
     private EntityManager em;
 
+    // same JTA datasource as the persistence unit, for plain JDBC batches
+    @Resource(lookup = "java:jboss/datasources/PhoenixDS")
+    private DataSource dataSource;
+
     @Inject
     private PasswordService passwordService;
 
+    public UserService() {
+    }
+
+    UserService(EntityManager em, PasswordService passwordService) {
+        this.em = em;
+        this.passwordService = passwordService;
+    }
+
     @Transactional
     public User createUser(String username, String email, String password, String... roles) {
+        User user = newUser(username, email, passwordService.hashPassword(password), roles);
+        em.persist(user);
+        return user;
+    }
+
+    /**
+     * Persist users whose passwords are already hashed, in one transaction.
+     * The persistence context is flushed and cleared every {@code users.import.flush.interval} users,
+     * so inserts leave as JDBC batches and memory stays flat however large the list is.
+     */
+    @Transactional
+    public void createUsers(List<User> users) {
+        int pending = 0;
+        for (User user : users) {
+            em.persist(user);
+            if (++pending == flushInterval) {
+                em.flush();
+                em.clear();
+                pending = 0;
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    static User newUser(String username, String email, String passwordHash, String... roles) {
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
-        user.setPasswordHash(passwordService.hashPassword(password));
+        user.setPasswordHash(passwordHash);
         user.getRoles().addAll(List.of(roles));
-        em.persist(user);
         return user;
     }
 
+    /**
+     * @return the given usernames that are already registered
+     */
+    public Set<String> findTakenUsernames(Collection<String> usernames) {
+        return new HashSet<>(em.createNamedQuery(User.TAKEN_USERNAMES, String.class)
+                .setParameter("usernames", usernames)
+                .getResultList());
+    }
+
+    /**
+     * @return the given emails that are already registered
+     */
+    public Set<String> findTakenEmails(Collection<String> emails) {
+        return new HashSet<>(em.createNamedQuery(User.TAKEN_EMAILS, String.class)
+                .setParameter("emails", emails)
+                .getResultList());
+    }
+
     public Optional<User> findByUsername(String username) {
-        return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
+        return Optional.ofNullable(em.createNamedQuery(User.FIND_BY_USERNAME, User.class)
                 .setParameter("username", username)
-                .getResultStream()
-                .findFirst();
+                .getSingleResultOrNull());
     }
 
     public Optional<User> findById(Long id) {
         return Optional.ofNullable(em.find(User.class, id));
     }
 
-    public List<User> findAll() {
-        return em.createQuery("SELECT u FROM User u", User.class).getResultList();
+    /**
+     * Keyset page: up to {@code limit} users with an id greater than {@code after}, in id order
+     */
+    public List<UserSummary> findPage(long after, int limit) {
+        return withRoles(em.createNamedQuery(User.SUMMARIES_AFTER, UserSummary.class)
+                .setParameter("after", after)
+                .setMaxResults(limit)
+                .getResultList());
+    }
+
+    /**
+     * Every user with an id greater than {@code after}, read from a single forward-only result stream.
+     * Rows are handed to {@code consumer} in chunks of {@code chunkSize}, each chunk costing one roles query.
+     */
+    @Transactional
+    public void streamAll(long after, int chunkSize, Consumer<UserSummary> consumer) {
+        List<UserSummary> chunk = new ArrayList<>(chunkSize);
+        try (Stream<UserSummary> rows = em.createNamedQuery(User.SUMMARIES_AFTER, UserSummary.class)
+                .setParameter("after", after)
+                .setHint("org.hibernate.fetchSize", chunkSize)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream()) {
+            Iterator<UserSummary> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize) {
+                    withRoles(chunk).forEach(consumer);
+                    chunk.clear();
+                }
+            }
+        }
+        withRoles(chunk).forEach(consumer);
+    }
+
+    private List<UserSummary> withRoles(List<UserSummary> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Long, Set<String>> roles = new HashMap<>();
+        em.createNamedQuery(User.ROLES_BY_IDS, Object[].class)
+                .setParameter("ids", users.stream().map(UserSummary::id).toList())
+                .getResultList()
+                .forEach(row -> roles.computeIfAbsent((Long) row[0], id -> new TreeSet<>()).add((String) row[1]));
+        return users.stream().map(user -> user.withRoles(roles.getOrDefault(user.id(), Set.of()))).toList();
+    }
+
+    /**
+     * Write buffered last-login timestamps as one JDBC batch; an older timestamp never overwrites a newer one
+     */
+    @Transactional
+    public void updateLastLogins(Map<Long, LocalDateTime> lastLogins) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE users SET last_login = ? WHERE id = ? AND (last_login IS NULL OR last_login < ?)")) {
+            for (Map.Entry<Long, LocalDateTime> entry : lastLogins.entrySet()) {
+                Timestamp lastLogin = Timestamp.valueOf(entry.getValue());
+                update.setTimestamp(1, lastLogin);
+                update.setLong(2, entry.getKey());
+                update.setTimestamp(3, lastLogin);
+                update.addBatch();
+            }
+            update.executeBatch();
+        } catch (SQLException e) {
+            throw new PersistenceException("Unable to update last logins", e);
+        }
     }
 
     @Transactional
@@ -69,8 +207,9 @@ public class UserService {
     }
 
     public boolean authenticate(String username, String password) {
-        return findByUsername(username)
-                .map(user -> user.isEnabled() && passwordService.verifyPassword(user.getPasswordHash(), password))
-                .orElse(false);
+        User user = findByUsername(username).orElse(null);
+        // always hash, so unknown and disabled users cannot be told apart by response time
+        boolean verified = passwordService.verifyPassword(user == null ? null : user.getPasswordHash(), password);
+        return verified && user.isEnabled();
     }
 }
@@ -0,0 +1,21 @@
+package xyz.kaaniche.phoenix.iam.service;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Listing view of a user: no password hash or TOTP secret, roles attached per page by {@link UserService}.
+ */
+public record UserSummary(Long id, String username, String email, boolean enabled,
+                          LocalDateTime createdAt, LocalDateTime lastLogin, Set<String> roles) {
+
+    // JPQL constructor projection, roles are fetched separately for a whole page of ids
+    public UserSummary(Long id, String username, String email, boolean enabled,
+                       LocalDateTime createdAt, LocalDateTime lastLogin) {
+        this(id, username, email, enabled, createdAt, lastLogin, Set.of());
+    }
+
+    UserSummary withRoles(Set<String> roles) {
+        return new UserSummary(id, username, email, enabled, createdAt, lastLogin, roles);
+    }
+}
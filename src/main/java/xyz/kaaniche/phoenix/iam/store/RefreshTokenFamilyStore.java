@@ -0,0 +1,142 @@
+package xyz.kaaniche.phoenix.iam.store;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Refresh-token family store for rotation and reuse detection.
+ * Each family (one per authorization) remembers only the jti of its current refresh token:
+ * presenting that jti rotates it, presenting any older jti revokes the whole family.
+ * Every operation touches a single key, so nothing is ever scanned.
+ * In memory, each family version is also queued by expiry: register and rotate drain only the expired head
+ * of that queue, so families that are never refreshed again do not accumulate.
+ */
+@ApplicationScoped
+public class RefreshTokenFamilyStore {
+    private static final String REDIS_KEY_PREFIX = "rtf:";
+    private static final String ROTATE_SCRIPT =
+            "local current = redis.call('GET', KEYS[1]) "
+            + "if not current then return 0 end "
+            + "if current ~= ARGV[1] then redis.call('DEL', KEYS[1]) return -1 end "
+            + "redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3]) "
+            + "return 1";
+
+    @Inject
+    private RedisClient redisClient;
+
+    private final Map<String, Family> inMemory = new ConcurrentHashMap<>();
+    private final Queue<Expiry> expiries = new PriorityBlockingQueue<>(64, Comparator.comparingLong(Expiry::expiresAtEpoch));
+    private boolean useRedis;
+
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        String store = config.getOptionalValue("refresh.token.store", String.class).orElse("redis");
+        useRedis = "redis".equalsIgnoreCase(store) && redisClient.isEnabled();
+    }
+
+    /**
+     * Start a new family whose current refresh token is {@code jti}
+     */
+    public void register(String familyId, String jti, long expiresAtEpoch) {
+        long ttl = expiresAtEpoch - Instant.now().getEpochSecond();
+        if (ttl <= 0) {
+            return;
+        }
+        if (useRedis) {
+            redisClient.execute(jedis -> jedis.setex(redisClient.prefix(REDIS_KEY_PREFIX + familyId), ttl, jti));
+        } else {
+            evictExpired(Instant.now().getEpochSecond());
+            inMemory.put(familyId, new Family(jti, expiresAtEpoch));
+            expiries.add(new Expiry(familyId, expiresAtEpoch));
+        }
+    }
+
+    /**
+     * Atomically replace {@code presentedJti} by {@code nextJti} if it is the family's current token.
+     * A stale jti means the token was already rotated, i.e. it leaked: the family is revoked.
+     */
+    public Rotation rotate(String familyId, String presentedJti, String nextJti, long expiresAtEpoch) {
+        long ttl = Math.max(1, expiresAtEpoch - Instant.now().getEpochSecond());
+        if (useRedis) {
+            Object result = redisClient.execute(jedis -> jedis.eval(ROTATE_SCRIPT,
+                    List.of(redisClient.prefix(REDIS_KEY_PREFIX + familyId)),
+                    List.of(presentedJti, nextJti, Long.toString(ttl))));
+            long code = result instanceof Long value ? value : 0L;
+            return code == 1L ? Rotation.ROTATED : code == -1L ? Rotation.REUSED : Rotation.UNKNOWN;
+        }
+        long now = Instant.now().getEpochSecond();
+        evictExpired(now);
+        Rotation[] outcome = {Rotation.UNKNOWN};
+        inMemory.computeIfPresent(familyId, (id, family) -> {
+            if (family.expiresAtEpoch < now) {
+                return null;
+            }
+            if (!family.currentJti.equals(presentedJti)) {
+                outcome[0] = Rotation.REUSED;
+                return null;
+            }
+            outcome[0] = Rotation.ROTATED;
+            return new Family(nextJti, now + ttl);
+        });
+        if (outcome[0] == Rotation.ROTATED) {
+            expiries.add(new Expiry(familyId, now + ttl));
+        }
+        return outcome[0];
+    }
+
+    /**
+     * Drop the families whose queued expiry has passed. A queued expiry is stale once its family was rotated
+     * to a later one; the family is only removed when its current token has expired too.
+     */
+    void evictExpired(long nowEpoch) {
+        Expiry head;
+        while ((head = expiries.peek()) != null && head.expiresAtEpoch() < nowEpoch) {
+            Expiry expired = expiries.poll();
+            if (expired == null) {
+                return;
+            }
+            if (expired.expiresAtEpoch() >= nowEpoch) {
+                expiries.add(expired); // another caller drained the head we saw
+                return;
+            }
+            inMemory.computeIfPresent(expired.familyId(), (id, family) -> family.expiresAtEpoch < nowEpoch ? null : family);
+        }
+    }
+
+    int size() {
+        return inMemory.size();
+    }
+
+    /**
+     * Revoke every refresh token of a family (e.g. on logout)
+     */
+    public void revoke(String familyId) {
+        if (useRedis) {
+            redisClient.execute(jedis -> jedis.del(redisClient.prefix(REDIS_KEY_PREFIX + familyId)));
+        } else {
+            inMemory.remove(familyId);
+        }
+    }
+
+    public enum Rotation {
+        ROTATED, REUSED, UNKNOWN
+    }
+
+    private record Family(String currentJti, long expiresAtEpoch) {
+    }
+
+    private record Expiry(String familyId, long expiresAtEpoch) {
+    }
+}
@@ -0,0 +1,61 @@
+package xyz.kaaniche.phoenix.iam.store;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TOTP used-step store for replay prevention.
+ * Remembers the last accepted time step per identity so a code can be used only once.
+ */
+@ApplicationScoped
+public class TotpStepStore {
+    private static final String REDIS_KEY_PREFIX = "totp:step:";
+    // GET + compare + SET EX executed server-side, so the check costs a single round trip
+    private static final String ADVANCE_SCRIPT =
+            "local last = redis.call('GET', KEYS[1]) "
+            + "if last and tonumber(last) >= tonumber(ARGV[1]) then return 0 end "
+            + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+            + "return 1";
+
+    @Inject
+    private RedisClient redisClient;
+
+    private final Map<String, Long> inMemory = new ConcurrentHashMap<>();
+    private boolean useRedis;
+
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        String store = config.getOptionalValue("totp.replay.store", String.class).orElse("redis");
+        useRedis = "redis".equalsIgnoreCase(store) && redisClient.isEnabled();
+    }
+
+    /**
+     * Atomically record {@code step} as the last accepted step for {@code identityKey}.
+     * Returns false if that step, or a later one, was already accepted.
+     */
+    public boolean advance(String identityKey, long step, int ttlSeconds) {
+        if (useRedis) {
+            Object result = redisClient.execute(jedis -> jedis.eval(ADVANCE_SCRIPT,
+                    List.of(redisClient.prefix(REDIS_KEY_PREFIX + identityKey)),
+                    List.of(Long.toString(step), Integer.toString(Math.max(1, ttlSeconds)))));
+            return Long.valueOf(1L).equals(result);
+        }
+        boolean[] accepted = {false};
+        inMemory.compute(identityKey, (key, last) -> {
+            if (last != null && last >= step) {
+                return last;
+            }
+            accepted[0] = true;
+            return step;
+        });
+        return accepted[0];
+    }
+}
@@ -0,0 +1,58 @@
+package xyz.kaaniche.phoenix.iam.store;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-use registry for authorization codes.
+ * A code is redeemable once across the cluster when backed by Redis ({@code SET NX EX}).
+ */
+@ApplicationScoped
+public class UsedCodeStore {
+    private static final String REDIS_KEY_PREFIX = "code:";
+
+    @Inject
+    private RedisClient redisClient;
+
+    private final Map<String, Long> inMemory = new ConcurrentHashMap<>();
+    private volatile long lastSweepEpoch;
+    private boolean useRedis;
+
+    @PostConstruct
+    public void init() {
+        Config config = ConfigProvider.getConfig();
+        String store = config.getOptionalValue("code.store", String.class).orElse("redis");
+        useRedis = "redis".equalsIgnoreCase(store) && redisClient.isEnabled();
+    }
+
+    /**
+     * Atomically mark a code as redeemed until it expires.
+     * Returns false if the code was already redeemed.
+     */
+    public boolean markUsed(String codeId, long expiresAtEpoch) {
+        long now = Instant.now().getEpochSecond();
+        long ttl = Math.max(1, expiresAtEpoch - now);
+
+        if (useRedis) {
+            return redisClient.execute(jedis -> {
+                String key = redisClient.prefix(REDIS_KEY_PREFIX + codeId);
+                return "OK".equals(jedis.set(key, "1", SetParams.setParams().nx().ex(ttl)));
+            });
+        }
+
+        // Expired codes are rejected before reaching the store, so sweeping once per second is enough
+        if (lastSweepEpoch != now) {
+            lastSweepEpoch = now;
+            inMemory.entrySet().removeIf(entry -> entry.getValue() < now);
+        }
+        return inMemory.putIfAbsent(codeId, now + ttl) == null;
+    }
+}
@@ -0,0 +1,102 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.abac.AbacEvaluator.Decision;
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AbacEvaluatorTest {
+    private static final Map<String, Object> SUSPENDED = Map.of("user", Map.of("id", "7", "status", "suspended"),
+            "resource", Map.of("type", "doc"));
+    private static final Map<String, Object> SECRET = Map.of("user", Map.of("id", "7", "status", "active"),
+            "resource", Map.of("type", "secret"));
+    private static final Map<String, Object> DOOR = Map.of("user", Map.of("id", "7", "status", "active"),
+            "resource", Map.of("type", "door"), "environment", Map.of("time", Map.of("hour", 10)));
+    private static final Map<String, Object> DOC = Map.of("user", Map.of("id", "7", "status", "active"),
+            "resource", Map.of("type", "doc"));
+
+    @Test
+    public void testDenyFirstOrderKeepsDecisions() {
+        PolicyStore store = new PolicyStore();
+        // a cheap PERMIT that matches every request, in the same unindexed group as an expensive DENY
+        store.addPolicy(new AbacPolicy("anyone", "anyone", "PERMIT", List.of(
+                new AbacPolicy.Condition("user.id", "contains", ""))));
+        store.addPolicy(new AbacPolicy("suspended", "suspended", "DENY", List.of(
+                new AbacPolicy.Condition("user.status", "matches", "susp.*"))));
+        // DENY filed under another index group
+        store.addPolicy(new AbacPolicy("secret", "secret", "DENY", List.of(
+                new AbacPolicy.Condition("resource.type", "equals", "secret"))));
+        // time-dependent DENY, only a candidate for doors
+        store.addPolicy(new AbacPolicy("night", "night", "DENY", List.of(
+                new AbacPolicy.Condition("resource.type", "equals", "door"),
+                new AbacPolicy.Condition("environment.time.hour", "greaterThan", 22))));
+        AbacMetrics metrics = new AbacMetrics(store);
+        metrics.init();
+        AbacEvaluator evaluator = new AbacEvaluator(store, metrics);
+        evaluator.init();
+
+        assertDecisions(evaluator);
+        // the DENY first, the PERMIT after it, whatever their scores
+        assertEquals(List.of("suspended", "anyone"), Arrays.stream(store.snapshot().compiled().candidates(DOC).get(0))
+                .map(CompiledPolicy::name).toList());
+
+        long hits = cacheHits(metrics);
+        evaluator.evaluate(DOOR);
+        assertEquals(hits, cacheHits(metrics), "a decision that evaluated environment.time must not be cached");
+        evaluator.evaluate(DOC);
+        assertEquals(hits + 1, cacheHits(metrics));
+
+        for (int i = 0; i < 1000; i++) {
+            evaluator.evaluateAll(List.of(Map.of("user", Map.of("id", Integer.toString(i), "status", "active"))));
+        }
+        evaluator.replan();
+        assertDecisions(evaluator);
+    }
+
+    @Test
+    public void testBatchBoundOnTimeIsNotCached() {
+        PolicyStore store = new PolicyStore();
+        store.addPolicy(new AbacPolicy("anyone", "anyone", "PERMIT", List.of(
+                new AbacPolicy.Condition("user.id", "contains", ""))));
+        store.addPolicy(new AbacPolicy("night", "night", "DENY", List.of(
+                new AbacPolicy.Condition("environment.time.hour", "lessThan", 8))));
+        AbacMetrics metrics = new AbacMetrics(store);
+        metrics.init();
+        AbacEvaluator evaluator = new AbacEvaluator(store, metrics);
+        evaluator.init();
+
+        // environment is shared by the whole batch, so the evaluator binds it once
+        List<Decision> day = evaluator.evaluateAll(Map.of("environment", Map.of("time", Map.of("hour", 10))),
+                List.of(Map.of("user", Map.of("id", "7"))));
+        assertTrue(day.get(0).isPermitted());
+
+        Decision night = evaluator.evaluate(Map.of("user", Map.of("id", "7"),
+                "environment", Map.of("time", Map.of("hour", 3))));
+        assertFalse(night.isPermitted());
+        assertEquals("night", night.getReason());
+        assertEquals(0L, cacheHits(metrics));
+    }
+
+    private static void assertDecisions(AbacEvaluator evaluator) {
+        Decision suspended = evaluator.evaluate(SUSPENDED);
+        assertFalse(suspended.isPermitted());
+        assertEquals("suspended", suspended.getReason());
+        Decision secret = evaluator.evaluate(SECRET);
+        assertFalse(secret.isPermitted());
+        assertEquals("secret", secret.getReason());
+        assertTrue(evaluator.evaluate(DOOR).isPermitted());
+        assertTrue(evaluator.evaluate(DOC).isPermitted());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long cacheHits(AbacMetrics metrics) {
+        return (Long) ((Map<String, Object>) metrics.report(0).get("decisions")).get("cacheHits");
+    }
+}
@@ -0,0 +1,122 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.abac.PolicyCompiler.CompiledPolicy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompiledPolicySetTest {
+    private static AbacPolicy policy(String id, String effect, AbacPolicy.Condition... conditions) {
+        return new AbacPolicy(id, id, effect, List.of(conditions));
+    }
+
+    private static List<String> candidates(CompiledPolicySet set, Map<String, Object> context) {
+        return set.candidates(context).stream().flatMap(Arrays::stream).map(CompiledPolicy::name).sorted().toList();
+    }
+
+    private static List<String> matching(CompiledPolicySet set, Map<String, Object> context) {
+        return set.candidates(context).stream().flatMap(Arrays::stream)
+                .filter(policy -> policy.matches(context)).map(CompiledPolicy::name).sorted().toList();
+    }
+
+    @Test
+    public void testOperators() {
+        CompiledPolicy policy = PolicyCompiler.compile(policy("p", "PERMIT",
+                new AbacPolicy.Condition("user.email", "matches", ".*@example\\.com"),
+                new AbacPolicy.Condition("user.department", "contains", "eng"),
+                new AbacPolicy.Condition("resource.size", "lessThan", 10),
+                new AbacPolicy.Condition("resource.size", "greaterThan", 1)));
+        assertTrue(policy.matches(Map.of("user", Map.of("email", "a@example.com", "department", "engineering"),
+                "resource", Map.of("size", 5))));
+        assertFalse(policy.matches(Map.of("user", Map.of("email", "a@example.org", "department", "engineering"),
+                "resource", Map.of("size", 5))));
+        assertFalse(policy.matches(Map.of("user", "flat", "resource", Map.of("size", 5))));
+        assertThrows(IllegalArgumentException.class, () -> PolicyCompiler.compile(policy("bad", "PERMIT",
+                new AbacPolicy.Condition("user.email", "matches", "(unclosed"))));
+    }
+
+    @Test
+    public void testAttributeComparisons() {
+        CompiledPolicy self = PolicyCompiler.compile(policy("self", "PERMIT",
+                AbacPolicy.Condition.compareAttributes("user.id", "equals", "resource.ownerId"),
+                new AbacPolicy.Condition("user.clearance", "greaterThan", "${resource.level}")));
+        assertTrue(self.matches(Map.of("user", Map.of("id", "42", "clearance", 3), "resource", Map.of("ownerId", "42", "level", 2))));
+        assertFalse(self.matches(Map.of("user", Map.of("id", "42", "clearance", 3), "resource", Map.of("ownerId", "7", "level", 2))));
+        assertFalse(self.matches(Map.of("user", Map.of("clearance", 3), "resource", Map.of("level", 2))));
+        assertNull(self.indexPath());
+        assertThrows(IllegalArgumentException.class, () -> PolicyCompiler.compile(policy("bad", "PERMIT",
+                AbacPolicy.Condition.compareAttributes("user.email", "matches", "resource.pattern"))));
+    }
+
+    @Test
+    public void testIndexSelectsCandidates() {
+        CompiledPolicySet set = new CompiledPolicySet(List.of(
+                PolicyCompiler.compile(policy("admin", "PERMIT", new AbacPolicy.Condition("user.role", "equals", "ADMIN"))),
+                PolicyCompiler.compile(policy("staff", "PERMIT", new AbacPolicy.Condition("user.role", "in", List.of("USER", "ADMIN")))),
+                PolicyCompiler.compile(policy("sensitive", "DENY", new AbacPolicy.Condition("resource.type", "equals", "sensitive-data"))),
+                PolicyCompiler.compile(policy("late", "DENY", new AbacPolicy.Condition("environment.time.hour", "greaterThan", 20))),
+                PolicyCompiler.compile(policy("audit", "LOG"))));
+        assertEquals(4, set.size());
+        assertEquals(List.of("late", "staff"), candidates(set, Map.of("user", Map.of("role", "USER"))));
+        assertEquals(List.of("admin", "late", "sensitive", "staff"), candidates(set,
+                Map.of("user", Map.of("role", "ADMIN"), "resource", Map.of("type", "sensitive-data"))));
+        assertEquals(List.of("late"), candidates(set, Map.of()));
+    }
+
+    @Test
+    public void testBindMatchesFullEvaluation() {
+        CompiledPolicySet set = new CompiledPolicySet(List.of(
+                PolicyCompiler.compile(policy("admin", "PERMIT", new AbacPolicy.Condition("user.role", "equals", "ADMIN"))),
+                PolicyCompiler.compile(policy("reader", "PERMIT",
+                        new AbacPolicy.Condition("resource.type", "equals", "document"),
+                        new AbacPolicy.Condition("user.department", "contains", "eng"))),
+                PolicyCompiler.compile(policy("owner", "PERMIT",
+                        new AbacPolicy.Condition("user.role", "in", List.of("USER")),
+                        new AbacPolicy.Condition("resource.owner", "equals", "alice"))),
+                PolicyCompiler.compile(policy("classified", "DENY", new AbacPolicy.Condition("resource.level", "greaterThan", 3)))));
+        Map<String, Object> subject = Map.of("user", Map.of("role", "USER", "department", "engineering"));
+        List<Map<String, Object>> items = List.of(
+                Map.of("resource", Map.of("type", "document", "owner", "bob")),
+                Map.of("resource", Map.of("type", "image", "owner", "alice", "level", 5)),
+                Map.of("resource", Map.of("type", "image", "owner", "carol")));
+        CompiledPolicySet bound = set.bind(subject, Set.of("user"));
+        for (Map<String, Object> item : items) {
+            Map<String, Object> context = new HashMap<>(subject);
+            context.putAll(item);
+            assertEquals(matching(set, context), matching(bound, context));
+        }
+        assertEquals(List.of("classified"), candidates(bound, Map.of()));
+    }
+
+    @Test
+    public void testPlannedOrder() {
+        CompiledPolicy rare = PolicyCompiler.compile(policy("rare", "PERMIT",
+                new AbacPolicy.Condition("user.email", "matches", ".*@example\\.com"),
+                new AbacPolicy.Condition("user.department", "contains", "eng")));
+        CompiledPolicy common = PolicyCompiler.compile(policy("common", "PERMIT",
+                new AbacPolicy.Condition("user.email", "matches", ".*@example\\.org")));
+        CompiledPolicy blocked = PolicyCompiler.compile(policy("blocked", "DENY",
+                new AbacPolicy.Condition("user.email", "matches", ".*@blocked\\.org")));
+        assertEquals(common.cost() + PolicyCompiler.cost("contains", rare.paths().get(1), null), rare.cost());
+
+        CompiledPolicySet set = new CompiledPolicySet(List.of(rare, common, blocked));
+        assertEquals(List.of("blocked", "common", "rare"), set.candidates(Map.of()).stream()
+                .flatMap(Arrays::stream).map(CompiledPolicy::name).toList());
+        for (int i = 0; i < 100; i++) {
+            rare.stats().record(true);
+            common.stats().record(false);
+        }
+        assertEquals(List.of("blocked", "rare", "common"), set.planned().candidates(Map.of()).stream()
+                .flatMap(Arrays::stream).map(CompiledPolicy::name).toList());
+    }
+}
@@ -0,0 +1,49 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.abac.AbacEvaluator.Decision;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class DecisionCacheTest {
+    @Test
+    public void testKeyIgnoresUnreferencedAttributes() {
+        PolicyStore store = new PolicyStore();
+        store.addPolicy(new AbacPolicy("admin", "Admin", "PERMIT", List.of(
+                new AbacPolicy.Condition("user.role", "equals", "ADMIN"),
+                new AbacPolicy.Condition("environment.time.hour", "lessThan", 18))));
+        DecisionCache cache = new DecisionCache(60_000L, 2);
+        Decision decision = new Decision(true, "PERMIT", null, store.getVersion());
+        cache.put(cache.key(store.snapshot(), Map.of("user", Map.of("role", "ADMIN", "id", "1"))), decision);
+
+        assertSame(decision, cache.get(cache.key(store.snapshot(), Map.of("user", Map.of("role", "ADMIN", "id", "2"),
+                "environment", Map.of("time", Map.of("hour", 9))))));
+        assertNull(cache.get(cache.key(store.snapshot(), Map.of("user", Map.of("role", "USER")))));
+    }
+
+    @Test
+    public void testOldestEvictedAndVersionInvalidation() {
+        PolicyStore store = new PolicyStore();
+        store.addPolicy(new AbacPolicy("admin", "Admin", "PERMIT", List.of(new AbacPolicy.Condition("user.role", "equals", "ADMIN"))));
+        DecisionCache cache = new DecisionCache(60_000L, 2);
+        for (String role : List.of("A", "B", "C")) {
+            cache.put(cache.key(store.snapshot(), Map.of("user", Map.of("role", role))),
+                    new Decision(false, "DENY", "No matching policy", store.getVersion()));
+        }
+        assertEquals(2, cache.size());
+        assertNull(cache.get(cache.key(store.snapshot(), Map.of("user", Map.of("role", "A")))));
+        assertEquals("No matching policy", cache.get(cache.key(store.snapshot(), Map.of("user", Map.of("role", "C")))).getReason());
+
+        DecisionCache.Key stale = cache.key(store.snapshot(), Map.of("user", Map.of("role", "A")));
+        store.removePolicy("admin");
+        assertNull(cache.get(cache.key(store.snapshot(), Map.of("user", Map.of("role", "A")))));
+        assertEquals(0, cache.size());
+        cache.put(stale, new Decision(false, "DENY", "No matching policy", 0L));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,28 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBucketsAndPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(500L); // < 1 µs
+        }
+        histogram.record(3_000L); // [2, 4) µs
+        histogram.record(Long.MAX_VALUE);
+
+        Map<String, Object> report = histogram.report();
+        assertEquals(100L, report.get("count"));
+        assertEquals(1L, report.get("p50Micros"));
+        assertEquals(1L, report.get("p90Micros"));
+        assertEquals(4L, report.get("p99Micros"));
+        assertEquals(List.of(Map.of("leMicros", 1L, "count", 98L), Map.of("leMicros", 4L, "count", 1L),
+                Map.of("leMicros", "+Inf", "count", 1L)), report.get("buckets"));
+    }
+}
@@ -0,0 +1,157 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceConfiguration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entity.PolicyRecord;
+import xyz.kaaniche.phoenix.iam.entity.PolicyRevision;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PolicyReplicatorTest {
+    private static final int POLICIES = 100_000;
+    private static final long STARTUP_BUDGET_MILLIS = 20_000;
+
+    private static EntityManagerFactory emf;
+
+    private static EntityManagerFactory open(String name) {
+        return new PersistenceConfiguration(name)
+                .managedClass(PolicyRecord.class)
+                .managedClass(PolicyRevision.class)
+                .property(PersistenceConfiguration.JDBC_URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .property(PersistenceConfiguration.JDBC_USER, "sa")
+                .property(PersistenceConfiguration.JDBC_PASSWORD, "")
+                .property(PersistenceConfiguration.SCHEMAGEN_DATABASE_ACTION, "drop-and-create")
+                .createEntityManagerFactory();
+    }
+
+    /**
+     * Runs seed in a resource-local transaction, as the container would
+     */
+    private static class TransactionalRepository extends PolicyRepository {
+        private final EntityManager em;
+
+        TransactionalRepository(EntityManager em) {
+            super(em);
+            this.em = em;
+        }
+
+        @Override
+        public boolean seed(List<AbacPolicy> policies) {
+            em.getTransaction().begin();
+            try {
+                boolean seeded = super.seed(policies);
+                em.getTransaction().commit();
+                return seeded;
+            } catch (RuntimeException e) {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                em.clear();
+                throw e;
+            }
+        }
+    }
+
+    @BeforeAll
+    public static void seed() {
+        emf = open("policy-replicator-test");
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        // every tenth policy is a tombstone, which startup must skip
+        em.createNativeQuery("insert into abac_policies (policy_id, name, effect, conditions, revision, deleted) "
+                        + "select 'p' || x, 'Policy ' || x, 'PERMIT', "
+                        + "'[{\"attribute\":\"resource.type\",\"operator\":\"equals\",\"value\":\"type-' || x || '\"},"
+                        + "{\"attribute\":\"user.department\",\"operator\":\"matches\",\"value\":\"dept-[0-9]+\"}]', "
+                        + "x, mod(x, 10) = 0 from system_range(1, :count)")
+                .setParameter("count", POLICIES)
+                .executeUpdate();
+        em.createNativeQuery("insert into abac_policy_revision (id, revision) values (1, :count)")
+                .setParameter("count", POLICIES)
+                .executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterAll
+    public static void close() {
+        emf.close();
+    }
+
+    @Test
+    public void testStartupAndChangeFeed() {
+        EntityManager em = emf.createEntityManager();
+        PolicyStore store = new PolicyStore();
+        PolicyReplicator replicator = new PolicyReplicator(new PolicyRepository(em), store, 1000);
+
+        long start = System.nanoTime();
+        replicator.load();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < STARTUP_BUDGET_MILLIS, "loading " + POLICIES + " policies took " + elapsedMillis + " ms");
+        assertEquals(POLICIES - POLICIES / 10, store.getAllPolicies().size());
+        assertEquals(1L, store.getVersion());
+        assertEquals(1, store.snapshot().compiled().candidates(Map.of("resource", Map.of("type", "type-7"))).stream()
+                .mapToInt(group -> group.length).sum());
+
+        // another node updates one policy and deletes another
+        em.getTransaction().begin();
+        em.createNativeQuery("update abac_policies set effect = 'DENY', revision = :revision where policy_id = 'p7'")
+                .setParameter("revision", POLICIES + 1)
+                .executeUpdate();
+        em.createNativeQuery("update abac_policies set deleted = true, conditions = null, revision = :revision where policy_id = 'p8'")
+                .setParameter("revision", POLICIES + 2)
+                .executeUpdate();
+        em.createNativeQuery("update abac_policy_revision set revision = :revision")
+                .setParameter("revision", POLICIES + 2)
+                .executeUpdate();
+        em.getTransaction().commit();
+        em.clear();
+
+        replicator.applyChanges();
+        assertEquals(2L, store.getVersion());
+        assertEquals("DENY", store.getPolicy("p7").getEffect());
+        assertNull(store.getPolicy("p8"));
+        replicator.applyChanges();
+        assertEquals(2L, store.getVersion());
+        em.close();
+    }
+
+    @Test
+    public void testConcurrentSeedLoadsTheWinner() {
+        EntityManagerFactory empty = open("policy-seed-test");
+        EntityManager firstEm = empty.createEntityManager();
+        EntityManager secondEm = empty.createEntityManager();
+        PolicyStore firstStore = new PolicyStore();
+        PolicyStore secondStore = new PolicyStore();
+        PolicyReplicator first = new PolicyReplicator(new TransactionalRepository(firstEm), firstStore, 100);
+        // both nodes found the repository empty; the first commits its seed before the second does
+        PolicyReplicator second = new PolicyReplicator(new TransactionalRepository(secondEm) {
+            @Override
+            public boolean seed(List<AbacPolicy> policies) {
+                first.load();
+                // the second node had found no counter row either, so its insert conflicts on commit
+                secondEm.getTransaction().begin();
+                secondEm.persist(new PolicyRevision());
+                secondEm.getTransaction().commit();
+                return true;
+            }
+        }, secondStore, 100);
+
+        second.load();
+        int defaults = PolicyStore.defaultPolicies().size();
+        assertEquals(defaults, firstStore.getAllPolicies().size());
+        assertEquals(defaults, secondStore.getAllPolicies().size());
+        assertEquals(defaults, new PolicyRepository(secondEm).currentRevision());
+        firstEm.close();
+        secondEm.close();
+        empty.close();
+    }
+}
@@ -0,0 +1,29 @@
+package xyz.kaaniche.phoenix.iam.abac;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PolicyStoreTest {
+    @Test
+    public void testSnapshotsAreVersionedAndImmutable() {
+        PolicyStore store = new PolicyStore();
+        PolicySnapshot before = store.snapshot();
+        store.addPolicy(new AbacPolicy("p1", "P1", "PERMIT", List.of()));
+        store.addPolicy(new AbacPolicy("p2", "P2", "DENY", List.of()));
+        PolicySnapshot after = store.snapshot();
+        assertEquals(before.version() + 2, after.version());
+        assertEquals(0, before.policies().size());
+        assertEquals(List.of("p1", "p2"), after.policies().stream().map(AbacPolicy::getId).toList());
+
+        store.removePolicy("missing");
+        assertSame(after, store.snapshot());
+        store.removePolicy("p1");
+        assertEquals(after.version() + 1, store.getVersion());
+        assertEquals(2, after.compiled().size());
+        assertEquals(1, store.snapshot().compiled().size());
+    }
+}
@@ -0,0 +1,97 @@
+package xyz.kaaniche.phoenix.iam.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.kaaniche.phoenix.iam.abac.AbacEvaluator;
+import xyz.kaaniche.phoenix.iam.abac.AbacMetrics;
+import xyz.kaaniche.phoenix.iam.abac.AbacPolicy;
+import xyz.kaaniche.phoenix.iam.abac.PolicyStore;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ABAC evaluation cost with the default policies plus {@code fillerPolicies} indexed on resource.type.
+ * The self-access policy compares user.id with resource.ownerId; users cycle so requests are mostly distinct,
+ * and {@code cacheTtlSeconds=0} disables the decision cache to measure raw evaluation.
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *           "-Dexec.args=-cp %classpath org.openjdk.jmh.Main AbacEvaluationBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbacEvaluationBenchmark {
+    private static final int USERS = 1024;
+    private static final int BATCH = 64;
+
+    @Param({"0", "30"})
+    public String cacheTtlSeconds;
+
+    @Param({"1000"})
+    public int fillerPolicies;
+
+    private AbacEvaluator evaluator;
+    private final List<Map<String, Object>> own = new ArrayList<>(USERS);
+    private final List<Map<String, Object>> foreign = new ArrayList<>(USERS);
+    private final List<Map<String, Object>> resources = new ArrayList<>(BATCH);
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("abac.decision.cache.ttl.seconds", cacheTtlSeconds);
+        PolicyStore store = new PolicyStore();
+        store.replaceAll(PolicyStore.defaultPolicies());
+        for (int i = 0; i < fillerPolicies; i++) {
+            store.addPolicy(new AbacPolicy("filler-" + i, "Filler " + i, "PERMIT", List.of(
+                    new AbacPolicy.Condition("resource.type", "equals", "type-" + i),
+                    new AbacPolicy.Condition("user.department", "matches", "dept-[0-9]+"))));
+        }
+        AbacMetrics metrics = new AbacMetrics();
+        inject(AbacMetrics.class, metrics, "policyStore", store);
+        metrics.init();
+        evaluator = new AbacEvaluator();
+        inject(AbacEvaluator.class, evaluator, "policyStore", store);
+        inject(AbacEvaluator.class, evaluator, "metrics", metrics);
+        evaluator.init();
+
+        for (int i = 0; i < USERS; i++) {
+            Map<String, Object> user = Map.of("id", "u" + i, "role", "USER", "department", "dept-" + (i % 16));
+            own.add(Map.of("user", user, "resource", Map.of("type", "document", "ownerId", "u" + i)));
+            foreign.add(Map.of("user", user, "resource", Map.of("type", "document", "ownerId", "u" + (i + 1))));
+        }
+        for (int i = 0; i < BATCH; i++) {
+            resources.add(Map.of("resource", Map.of("type", "type-" + i, "ownerId", "u" + (i % 4))));
+        }
+    }
+
+    private static <T> void inject(Class<T> type, T bean, String name, Object value) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(bean, value);
+    }
+
+    @Benchmark
+    public AbacEvaluator.Decision ownResource() {
+        next = (next + 1) & (USERS - 1);
+        return evaluator.evaluate(own.get(next));
+    }
+
+    @Benchmark
+    public AbacEvaluator.Decision foreignResource() {
+        next = (next + 1) & (USERS - 1);
+        return evaluator.evaluate(foreign.get(next));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<AbacEvaluator.Decision> batchForOneUser() {
+        next = (next + 1) & (USERS - 1);
+        Map<String, Object> subject = Map.of("user", Map.of("id", "u" + (next & 3), "role", "USER", "department", "dept-1"));
+        return evaluator.evaluateAll(subject, resources);
+    }
+}
@@ -0,0 +1,52 @@
+package xyz.kaaniche.phoenix.iam.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.kaaniche.phoenix.iam.security.AuthorizationCode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of an authorization code.
+ * Decode cycles through distinct codes, as real codes are redeemed once.
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *           "-Dexec.args=-cp %classpath org.openjdk.jmh.Main AuthorizationCodeBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 8, time = 1)
+@Fork(1)
+public class AuthorizationCodeBenchmark {
+    private static final String VERIFIER = "dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk";
+
+    private AuthorizationCode authorizationCode;
+    private String challenge;
+    private final String[] sealed = new String[64];
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        authorizationCode = new AuthorizationCode("TENANT_TEST", "john", "openid profile",
+                1_700_000_000L, "http://localhost:8080/callback", 42L);
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(VERIFIER.getBytes(StandardCharsets.US_ASCII));
+        challenge = Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        for (int i = 0; i < sealed.length; i++) {
+            sealed[i] = authorizationCode.getCode(challenge);
+        }
+    }
+
+    @Benchmark
+    public String encode() throws Exception {
+        return authorizationCode.getCode(challenge);
+    }
+
+    @Benchmark
+    public AuthorizationCode decode() throws Exception {
+        next = (next + 1) & (sealed.length - 1);
+        return AuthorizationCode.decode(sealed[next], VERIFIER);
+    }
+}
@@ -0,0 +1,87 @@
+package xyz.kaaniche.phoenix.iam.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.NoResultException;
+import org.openjdk.jmh.annotations.*;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failed-login throughput under concurrent credential stuffing: every lookup is for an unknown username.
+ * Compares the former getSingleResult/NoResultException lookup with the Optional-returning one.
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *           "-Dexec.args=-cp %classpath org.openjdk.jmh.Main FailedLoginBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class FailedLoginBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        EntityManagerFactory emf;
+
+        @Setup
+        public void setUp() {
+            emf = LoginFixture.open("failed-login-bench");
+        }
+
+        @TearDown
+        public void tearDown() {
+            emf.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        EntityManager em;
+        int next;
+
+        @Setup
+        public void setUp(Database database) {
+            em = database.emf.createEntityManager();
+        }
+
+        @TearDown
+        public void tearDown() {
+            em.close();
+        }
+
+        String unknownUsername() {
+            next = next % LoginFixture.IDENTITIES + 1;
+            return "intruder" + next;
+        }
+    }
+
+    @Benchmark
+    public Identity exceptionLookup(Session session) {
+        try {
+            return session.em.createNamedQuery(Identity.FIND_BY_USERNAME, Identity.class)
+                    .setParameter("username", session.unknownUsername())
+                    .getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Optional<Identity> resultStreamLookup(Session session) {
+        return session.em.createNamedQuery(Identity.FIND_BY_USERNAME, Identity.class)
+                .setParameter("username", session.unknownUsername())
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Benchmark
+    public Optional<Identity> singleResultOrNullLookup(Session session) {
+        return Optional.ofNullable(session.em.createNamedQuery(Identity.FIND_BY_USERNAME, Identity.class)
+                .setParameter("username", session.unknownUsername())
+                .getSingleResultOrNull());
+    }
+}
@@ -0,0 +1,57 @@
+package xyz.kaaniche.phoenix.iam.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceConfiguration;
+import xyz.kaaniche.phoenix.iam.entities.Grant;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+/**
+ * Embedded H2 seeded with one tenant and {@link #IDENTITIES} identities ({@code user1..userN}),
+ * every other one holding a grant on the tenant.
+ * Rows are seeded with native SQL, one statement per row.
+ */
+final class LoginFixture {
+    static final int IDENTITIES = 1024;
+    static final String TENANT = "TENANT_BENCH";
+
+    private LoginFixture() {
+    }
+
+    static EntityManagerFactory open(String name) {
+        EntityManagerFactory emf = new PersistenceConfiguration(name)
+                .managedClass(Tenant.class)
+                .managedClass(Identity.class)
+                .managedClass(Grant.class)
+                .property(PersistenceConfiguration.JDBC_URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .property(PersistenceConfiguration.JDBC_USER, "sa")
+                .property(PersistenceConfiguration.JDBC_PASSWORD, "")
+                .property(PersistenceConfiguration.SCHEMAGEN_DATABASE_ACTION, "drop-and-create")
+                .property("hibernate.show_sql", "false")
+                .createEntityManagerFactory();
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createNativeQuery("insert into tenants (id, tenant_id, tenant_secret, redirect_uri, allowed_roles, "
+                        + "required_scopes, supported_grant_types) values (1, :name, 'secret', "
+                        + "'http://localhost:8080/callback', 1, 'openid', 'authorization_code')")
+                .setParameter("name", TENANT)
+                .executeUpdate();
+        for (long i = 1; i <= IDENTITIES; i++) {
+            em.createNativeQuery("insert into identities (id, username, password, roles, provided_scopes, totp_enabled) "
+                            + "values (:id, :username, 'hash', 1, 'openid', false)")
+                    .setParameter("id", i)
+                    .setParameter("username", "user" + i)
+                    .executeUpdate();
+            if (i % 2 == 0) {
+                em.createNativeQuery("insert into issued_grants (tenant_id, identity_id, approved_scopes) "
+                                + "values (1, :id, 'openid profile')")
+                        .setParameter("id", i)
+                        .executeUpdate();
+            }
+        }
+        em.getTransaction().commit();
+        em.close();
+        return emf;
+    }
+}
@@ -0,0 +1,78 @@
+package xyz.kaaniche.phoenix.iam.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import xyz.kaaniche.phoenix.iam.controllers.IdentityGrant;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login-path query latency (tenant by name, then identity + grant projection) against an embedded H2,
+ * comparing JPQL strings passed to createQuery on every call with the entities' named queries.
+ * Run with: mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *           "-Dexec.args=-cp %classpath org.openjdk.jmh.Main LoginQueryBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginQueryBenchmark {
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        emf = LoginFixture.open("login-bench");
+        em = emf.createEntityManager();
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    @Benchmark
+    public IdentityGrant adHocQueries() {
+        Tenant tenant = em.createQuery("select t from Tenant t where name =:name", Tenant.class)
+                .setParameter("name", LoginFixture.TENANT)
+                .getSingleResult();
+        IdentityGrant grant = em.createQuery("select new xyz.kaaniche.phoenix.iam.controllers.IdentityGrant("
+                        + "i.id, i.username, i.password, i.roles, i.totpSecret, i.totpEnabled, g.approvedScopes) "
+                        + "from Identity i left join Grant g on g.id.identityId = i.id and g.id.tenantId = :tenantId "
+                        + "where i.username = :username", IdentityGrant.class)
+                .setParameter("tenantId", tenant.getId())
+                .setParameter("username", nextUsername())
+                .getResultStream()
+                .findFirst()
+                .orElseThrow();
+        em.clear();
+        return grant;
+    }
+
+    @Benchmark
+    public IdentityGrant namedQueries() {
+        Tenant tenant = em.createNamedQuery(Tenant.FIND_BY_NAME, Tenant.class)
+                .setParameter("name", LoginFixture.TENANT)
+                .getSingleResult();
+        IdentityGrant grant = em.createNamedQuery(Identity.GRANT_BY_USERNAME, IdentityGrant.class)
+                .setParameter("tenantId", tenant.getId())
+                .setParameter("username", nextUsername())
+                .getResultStream()
+                .findFirst()
+                .orElseThrow();
+        em.clear();
+        return grant;
+    }
+
+    private String nextUsername() {
+        next = next % LoginFixture.IDENTITIES + 1;
+        return "user" + next;
+    }
+}
@@ -0,0 +1,96 @@
+package xyz.kaaniche.phoenix.iam.boundaries;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionOutboxTest {
+    /**
+     * A client that acknowledges nothing until told to: sends stay in flight like on a stalled connection
+     */
+    private static final class StalledClient {
+        final List<String> sent = new ArrayList<>();
+        final List<SendHandler> pending = new ArrayList<>();
+        CloseReason closedWith;
+        final Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getAsyncRemote" -> remote();
+                    case "isOpen" -> closedWith == null;
+                    case "getId" -> "s1";
+                    case "close" -> {
+                        closedWith = (CloseReason) args[0];
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        private RemoteEndpoint.Async remote() {
+            return (RemoteEndpoint.Async) Proxy.newProxyInstance(RemoteEndpoint.Async.class.getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.Async.class}, (proxy, method, args) -> {
+                        if (!method.getName().equals("sendText") || args.length != 2) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        sent.add((String) args[0]);
+                        pending.add((SendHandler) args[1]);
+                        return null;
+                    });
+        }
+
+        void acknowledge() {
+            pending.remove(0).onResult(new SendResult(session));
+        }
+    }
+
+    @Test
+    public void testSlowClientDropsWithoutBlocking() {
+        StalledClient client = new StalledClient();
+        SessionOutbox outbox = new SessionOutbox(client.session, 2, SessionOutbox.Overflow.DROP);
+        assertTrue(outbox.offer("m1"));
+        assertTrue(outbox.offer("m2"));
+        assertTrue(outbox.offer("m3"));
+        assertFalse(outbox.offer("m4"));
+        assertEquals(List.of("m1"), client.sent);
+        assertEquals(1, outbox.dropped());
+
+        client.acknowledge();
+        client.acknowledge();
+        client.acknowledge();
+        assertEquals(List.of("m1", "m2", "m3"), client.sent);
+        assertEquals(0, outbox.queued());
+        assertNull(client.closedWith);
+    }
+
+    @Test
+    public void testOverflowAndFailureClose() {
+        StalledClient client = new StalledClient();
+        SessionOutbox outbox = new SessionOutbox(client.session, 1, SessionOutbox.Overflow.CLOSE);
+        outbox.offer("m1");
+        outbox.offer("m2");
+        assertFalse(outbox.offer("m3"));
+        assertNull(client.closedWith);
+        client.acknowledge();
+        assertEquals(CloseReason.CloseCodes.TRY_AGAIN_LATER, client.closedWith.getCloseCode());
+        assertEquals(List.of("m1"), client.sent);
+
+        StalledClient failing = new StalledClient();
+        SessionOutbox other = new SessionOutbox(failing.session, 4, SessionOutbox.Overflow.DROP);
+        other.offer("m1");
+        other.offer("m2");
+        failing.pending.remove(0).onResult(new SendResult(failing.session, new IOException("reset")));
+        assertEquals(CloseReason.CloseCodes.UNEXPECTED_CONDITION, failing.closedWith.getCloseCode());
+        assertFalse(other.offer("m3"));
+    }
+}
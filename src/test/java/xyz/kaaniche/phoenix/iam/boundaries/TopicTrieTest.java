@@ -0,0 +1,41 @@
+package xyz.kaaniche.phoenix.iam.boundaries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TopicTrieTest {
+    @Test
+    public void testWildcardMatching() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("sensors/+/temperature", "plus");
+        trie.subscribe("sensors/#", "multi");
+        trie.subscribe("sensors/kitchen/temperature", "exact");
+        trie.subscribe("#", "all");
+        trie.subscribe("+/kitchen/+", "plus");
+
+        assertEquals(Set.of("plus", "multi", "exact", "all"), trie.match("sensors/kitchen/temperature"));
+        assertEquals(Set.of("multi", "all"), trie.match("sensors"));
+        assertEquals(Set.of("multi", "all"), trie.match("sensors/kitchen/humidity/raw"));
+        assertEquals(Set.of("all"), trie.match("alerts/"));
+        assertEquals(Set.of(), trie.match("$SYS/broker/load"));
+
+        trie.unsubscribe("#", "all");
+        trie.unsubscribe("sensors/kitchen/temperature", "exact");
+        trie.unsubscribe("sensors/kitchen/temperature", "absent");
+        assertEquals(Set.of("plus", "multi"), trie.match("sensors/kitchen/temperature"));
+        assertEquals(Set.of(), trie.match("alerts"));
+    }
+
+    @Test
+    public void testInvalidFilters() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        assertThrows(IllegalArgumentException.class, () -> trie.subscribe("", "s"));
+        assertThrows(IllegalArgumentException.class, () -> trie.subscribe("a/#/b", "s"));
+        assertThrows(IllegalArgumentException.class, () -> trie.subscribe("a/b+", "s"));
+        assertThrows(IllegalArgumentException.class, () -> trie.subscribe("a#", "s"));
+    }
+}
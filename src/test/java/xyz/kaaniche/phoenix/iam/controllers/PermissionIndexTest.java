@@ -0,0 +1,39 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entities.Identity;
+import xyz.kaaniche.phoenix.iam.entities.Tenant;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermissionIndexTest {
+    private final PermissionIndex index = new PermissionIndex(Map.of(
+            Role.byId("Surfer"), List.of(new PermissionIndex.Grant(PermissionIndex.Action.EDIT, "Identity", "42")),
+            Role.byId("Moderator"), List.of(new PermissionIndex.Grant(PermissionIndex.Action.DELETE, "Identity", null))));
+
+    @Test
+    public void testAllows() {
+        long surfer = RoleCodec.encode(Set.of("Surfer"));
+        long both = RoleCodec.encode(Set.of("Surfer", "Moderator"));
+        assertTrue(index.allows(surfer, PermissionIndex.Action.EDIT, Identity.class, 42L));
+        assertFalse(index.allows(surfer, PermissionIndex.Action.EDIT, Identity.class, 43L));
+        assertFalse(index.allows(surfer, PermissionIndex.Action.EDIT, Tenant.class, 42L));
+        assertFalse(index.allows(surfer, PermissionIndex.Action.DELETE, Identity.class, 42L));
+        assertTrue(index.allows(both, PermissionIndex.Action.DELETE, Identity.class, 7L));
+        assertTrue(index.allows(both, PermissionIndex.Action.EDIT, Identity.class, 42L));
+        assertFalse(index.allows(0L, PermissionIndex.Action.SAVE, Identity.class, null));
+        assertTrue(index.allows(RoleCodec.encode(Set.of("root")), PermissionIndex.Action.SAVE, Tenant.class, null));
+    }
+
+    @Test
+    public void testEncode() {
+        assertEquals(0L, RoleCodec.encode(null));
+        assertEquals(Set.of("Surfer", "Moderator"), RoleCodec.decode(RoleCodec.encode(Set.of("Surfer", "Moderator", "unknown"))));
+    }
+}
@@ -0,0 +1,26 @@
+package xyz.kaaniche.phoenix.iam.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RoleCodecTest {
+    @Test
+    public void testDecode() {
+        assertEquals(Set.of("guest"), RoleCodec.decode(0L));
+        assertEquals(Set.of("root"), RoleCodec.decode(Long.MAX_VALUE));
+        assertEquals(Set.of("Surfer", "Moderator"), RoleCodec.decode(Role.R_P00.getValue() | Role.R_P01.getValue()));
+        assertEquals(Set.of("Administrator"), RoleCodec.decode(Role.R_P02.getValue() | Role.R_P40.getValue()));
+        assertThrows(IllegalArgumentException.class, () -> RoleCodec.decode(-1L));
+    }
+
+    @Test
+    public void testCachedMask() {
+        long roles = Role.R_P00.getValue() | Role.R_P02.getValue();
+        assertSame(RoleCodec.decode(roles), RoleCodec.decode(roles));
+    }
+}
@@ -0,0 +1,45 @@
+package xyz.kaaniche.phoenix.iam.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AuthorizationCodeTest {
+    private static final String VERIFIER = "dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk";
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        AuthorizationCode code = new AuthorizationCode("TENANT_TEST", "john", "openid profile",
+                1_700_000_000L, "http://localhost:8080/callback", 42L);
+        String sealed = code.getCode(challenge(VERIFIER));
+        assertEquals(code, AuthorizationCode.decode(sealed, VERIFIER));
+        assertEquals(code, AuthorizationCode.decode(sealed, VERIFIER));
+    }
+
+    @Test
+    public void testVerifierMismatch() throws Exception {
+        AuthorizationCode code = new AuthorizationCode("TENANT_TEST", "john", "", 1L, "http://localhost/callback", null);
+        String sealed = code.getCode(challenge(VERIFIER));
+        assertNull(AuthorizationCode.decode(sealed, VERIFIER.replace('d', 'e')));
+    }
+
+    @Test
+    public void testTamperedCode() throws Exception {
+        AuthorizationCode code = new AuthorizationCode("TENANT_TEST", "john", "openid", 1L, "http://localhost/callback", null);
+        char[] sealed = code.getCode(challenge(VERIFIER)).toCharArray();
+        sealed[sealed.length / 2] = sealed[sealed.length / 2] == 'A' ? 'B' : 'A';
+        assertThrows(GeneralSecurityException.class, () -> AuthorizationCode.decode(new String(sealed), VERIFIER));
+    }
+
+    private static String challenge(String verifier) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(verifier.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
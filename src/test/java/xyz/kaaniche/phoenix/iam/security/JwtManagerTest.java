@@ -8,6 +8,7 @@ import javax.crypto.KeyGenerator;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -35,6 +36,17 @@ public class JwtManagerTest {
         assertEquals(Long.MAX_VALUE,sum);
     }
 
+    @Test
+    public void testGenerateJWTBatch() throws Exception {
+        List<String> tokens = manager.generateAccessTokens(List.of(
+                new JwtManager.AccessTokenRequest("api", "svc-a", "resource.read", new String[]{"surfer"}),
+                new JwtManager.AccessTokenRequest("api", "svc-b", "resource.write", new String[0])
+        )).toList();
+        assertEquals(2, tokens.size());
+        assertEquals("svc-a", manager.validateJWT(tokens.get(0)).orElseThrow().getJWTClaimsSet().getSubject());
+        assertEquals("svc-b", manager.validateJWT(tokens.get(1)).orElseThrow().getJWTClaimsSet().getSubject());
+    }
+
     @Test
     public void testXChaCha20Poly1305() throws GeneralSecurityException {
         String associatedData = "urn:phoenix:code:dummy_random:more_info";
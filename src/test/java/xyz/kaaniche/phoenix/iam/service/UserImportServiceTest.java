@@ -0,0 +1,163 @@
+package xyz.kaaniche.phoenix.iam.service;
+
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceConfiguration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import xyz.kaaniche.phoenix.iam.entity.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UserImportServiceTest {
+    private static EntityManagerFactory emf;
+    private static ExecutorService pool;
+
+    @BeforeAll
+    public static void open() {
+        emf = new PersistenceConfiguration("user-import-test")
+                .managedClass(User.class)
+                .property(PersistenceConfiguration.JDBC_URL, "jdbc:h2:mem:user-import-test;DB_CLOSE_DELAY=-1")
+                .property(PersistenceConfiguration.JDBC_USER, "sa")
+                .property(PersistenceConfiguration.JDBC_PASSWORD, "")
+                .property(PersistenceConfiguration.SCHEMAGEN_DATABASE_ACTION, "drop-and-create")
+                .property("hibernate.jdbc.batch_size", "50")
+                .createEntityManagerFactory();
+        pool = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterAll
+    public static void close() {
+        pool.shutdown();
+        emf.close();
+    }
+
+    /**
+     * Runs createUsers in a resource-local transaction, as the container would
+     */
+    private static final class TransactionalUserService extends UserService {
+        private final EntityManager em;
+
+        TransactionalUserService(EntityManager em) {
+            super(em, null);
+            this.em = em;
+        }
+
+        @Override
+        public void createUsers(List<User> users) {
+            em.getTransaction().begin();
+            try {
+                super.createUsers(users);
+                em.getTransaction().commit();
+            } catch (RuntimeException e) {
+                em.getTransaction().rollback();
+                em.clear();
+                throw e;
+            }
+        }
+    }
+
+    private static final class PlainPasswordService extends PasswordService {
+        @Override
+        public String hashPassword(String password) {
+            return "hashed:" + password;
+        }
+    }
+
+    private static ManagedExecutorService managed(ExecutorService delegate) {
+        return (ManagedExecutorService) Proxy.newProxyInstance(ManagedExecutorService.class.getClassLoader(),
+                new Class<?>[]{ManagedExecutorService.class}, (proxy, method, args) -> {
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Test
+    public void testImportReportsRowAndBatchFailures() throws IOException {
+        EntityManager em = emf.createEntityManager();
+        UserService users = new TransactionalUserService(em);
+        users.createUsers(List.of(UserService.newUser("taken", "taken@example.com", "hashed:x", "USER")));
+        UserImportService importer = new UserImportService(users, new PlainPasswordService(), managed(pool), 2, 3);
+
+        String input = String.join("\n",
+                "{\"username\":\"alice\",\"email\":\"alice@example.com\",\"password\":\"a\"}",
+                "{\"username\":\"bob\",\"email\":\"taken@example.com\",\"password\":\"b\"}",
+                "{\"username\":\"alice\",\"email\":\"alice2@example.com\",\"password\":\"a\"}",
+                "{\"username\":\"carol\",\"email\":\"carol@example.com\"}",
+                "{\"username\":\"dave\",\"email\":\"dave@example.com\",\"password\":\"d\"}",
+                // too long for the column: only the insert can reject it, together with the rest of its batch
+                "{\"username\":\"" + "x".repeat(300) + "\",\"email\":\"x@example.com\",\"password\":\"x\"}",
+                "{\"username\":\"erin\",\"email\":\"erin@example.com\",\"password\":\"e\",\"roles\":[\"ADMIN\"]}",
+                "{\"username\":\"frank\",\"email\":\"frank@example.com\",\"password\":\"f\"}",
+                "{\"username\":\"gina\",\"email\":\"gina@example.com\",\"password\":\"g\",\"roles\":\"ADMIN\"}",
+                "{\"username\":\"hugo\",\"email\":\"hugo@example.com\",\"password\":\"h\",\"roles\":[1]}");
+        Map<Long, String> errors = new TreeMap<>();
+        List<Long> processed = new ArrayList<>();
+        UserImportService.Progress progress = importer.importUsers(new BufferedReader(new StringReader(input)),
+                UserImportService.Format.NDJSON, new UserImportService.Listener() {
+                    @Override
+                    public void onRowError(long line, String username, String error) {
+                        errors.put(line, error);
+                    }
+
+                    @Override
+                    public void onProgress(UserImportService.Progress progress) {
+                        processed.add(progress.processed());
+                    }
+                });
+
+        assertEquals(10, progress.processed());
+        assertEquals(3, progress.imported());
+        assertEquals(7, progress.failed());
+        assertEquals(List.of(3L, 6L, 9L, 10L), processed);
+        assertEquals("email already exists", errors.get(2L));
+        assertEquals("username already exists", errors.get(3L));
+        assertEquals("username, email and password are required", errors.get(4L));
+        assertEquals("roles must be an array of strings", errors.get(9L));
+        assertEquals("roles must be an array of strings", errors.get(10L));
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 9L, 10L), List.copyOf(errors.keySet()));
+        assertEquals(errors.get(5L), errors.get(6L));
+
+        em.clear();
+        List<User> stored = em.createQuery("select u from User u order by u.id", User.class).getResultList();
+        assertEquals(List.of("taken", "alice", "erin", "frank"), stored.stream().map(User::getUsername).toList());
+        assertEquals(4, stored.stream().map(User::getId).distinct().count());
+        assertEquals("hashed:e", stored.get(2).getPasswordHash());
+        assertEquals(List.of("ADMIN"), List.copyOf(stored.get(2).getRoles()));
+        assertNull(users.findByUsername("dave").orElse(null));
+        em.close();
+    }
+
+    @Test
+    public void testImportParallelismLeavesLoginPermits() {
+        assertEquals(3, UserImportService.importParallelism(8, 4));
+        assertEquals(2, UserImportService.importParallelism(2, 4));
+        assertEquals(1, UserImportService.importParallelism(0, 4));
+        assertEquals(1, UserImportService.importParallelism(4, 1));
+    }
+
+    @Test
+    public void testSplitCsv() {
+        assertEquals(List.of("alice", "alice@example.com", "secret", ""), UserImportService.splitCsv("alice,alice@example.com,secret,"));
+        assertEquals(List.of("bob", "b,o\"b", "USER ADMIN"), UserImportService.splitCsv("bob,\"b,o\"\"b\",USER ADMIN"));
+        assertNull(UserImportService.splitCsv("carol,\"unterminated"));
+    }
+}
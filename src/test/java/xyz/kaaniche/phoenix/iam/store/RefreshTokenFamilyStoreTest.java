@@ -0,0 +1,38 @@
+package xyz.kaaniche.phoenix.iam.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RefreshTokenFamilyStoreTest {
+    @Test
+    public void testExpiredFamiliesAreEvicted() {
+        RefreshTokenFamilyStore store = new RefreshTokenFamilyStore();
+        long now = Instant.now().getEpochSecond();
+        store.register("idle", "jti-1", now + 60);
+        store.register("active", "jti-2", now + 60);
+        assertEquals(RefreshTokenFamilyStore.Rotation.ROTATED, store.rotate("active", "jti-2", "jti-3", now + 3600));
+        assertEquals(2, store.size());
+
+        store.evictExpired(now + 120);
+        assertEquals(1, store.size());
+        assertEquals(RefreshTokenFamilyStore.Rotation.UNKNOWN, store.rotate("idle", "jti-1", "jti-4", now + 3600));
+        assertEquals(RefreshTokenFamilyStore.Rotation.ROTATED, store.rotate("active", "jti-3", "jti-5", now + 3600));
+    }
+
+    @Test
+    public void testReusedTokenRevokesFamily() {
+        RefreshTokenFamilyStore store = new RefreshTokenFamilyStore();
+        long now = Instant.now().getEpochSecond();
+        store.register("family", "jti-1", now + 60);
+        assertEquals(RefreshTokenFamilyStore.Rotation.ROTATED, store.rotate("family", "jti-1", "jti-2", now + 60));
+
+        // jti-1 was already rotated: presenting it again means it leaked
+        assertEquals(RefreshTokenFamilyStore.Rotation.REUSED, store.rotate("family", "jti-1", "jti-3", now + 60));
+        assertEquals(0, store.size());
+        // the family is gone, so even its current token no longer rotates
+        assertEquals(RefreshTokenFamilyStore.Rotation.UNKNOWN, store.rotate("family", "jti-2", "jti-4", now + 60));
+    }
+}